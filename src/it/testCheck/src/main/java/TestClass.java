@@ -0,0 +1,4 @@
+
+class TestClass {
+	
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+try {
+
+//check must not leave any class files behind
+def file = new File(basedir, 'target/classes/fb/foo.class')
+assert !file.exists()
+
+def file2 = new File(basedir, 'target/classes/fb2/foo2.class')
+assert !file2.exists()
+
+def log = new File(basedir, 'build.log').text
+assert log.contains('Compiling 2 source files')
+
+
+
+return true
+
+} catch(Throwable e) {
+  e.printStackTrace()
+  return false
+}
@@ -0,0 +1,71 @@
+// Generates the modules of the performance test. Each module is a chain of
+// yeti modules where every module loads the one before, the modules differ
+// in the number of sources, the size of the sources and the length of the
+// classpath (mLarge depends on the other two modules).
+try {
+
+def sizes = [
+    mSmall:  [files: 5,   functions: 5,  deps: []],
+    mMedium: [files: 40,  functions: 10, deps: ['mSmall']],
+    mLarge:  [files: 150, functions: 20, deps: ['mSmall', 'mMedium']]
+]
+
+new File(basedir, 'perf-start.txt').text = "" + System.currentTimeMillis()
+
+sizes.each { name, size ->
+    def dir = new File(basedir, name)
+    def pkg = name.toLowerCase()
+    def deps = size.deps.collect { d -> """
+        <dependency>
+            <groupId>org.yeti-maven-plugin</groupId>
+            <artifactId>${d}</artifactId>
+            <version>1.0-SNAPSHOT</version>
+        </dependency>""" }.join('')
+    dir.mkdirs()
+    new File(dir, 'pom.xml').text = """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <modelVersion>4.0.0</modelVersion>
+    <parent>
+        <groupId>org.yeti-maven-plugin</groupId>
+        <artifactId>testPerformance</artifactId>
+        <version>1.0-SNAPSHOT</version>
+    </parent>
+    <artifactId>${name}</artifactId>
+    <packaging>jar</packaging>
+    <dependencies>${deps}
+    </dependencies>
+</project>
+"""
+    def src = new File(dir, "src/main/yeti/${pkg}")
+    src.mkdirs()
+    for (int i = 0; i < size.files; i++) {
+        def text = new StringBuilder()
+        text << "/// generated module ${i} of ${name}\n"
+        text << "module ${pkg}.mod${i};\n\n"
+        if (i > 0)
+            text << "prev = load ${pkg}.mod${i - 1};\n\n"
+        text << "{\n"
+        for (int f = 0; f < size.functions; f++) {
+            def start = i > 0 ? "(prev.f${f} x)" : "0"
+            text << "    /// function ${f}\n"
+            text << "    f${f} x = fold (+) ${start} (map (* ${f + 1}) [x, x + 1, x + 2])"
+            text << (f < size.functions - 1 ? ",\n\n" : "\n")
+        }
+        text << "}\n"
+        new File(src, "mod${i}.yeti").text = text.toString()
+    }
+    def test = new File(dir, "src/test/yeti/${pkg}")
+    test.mkdirs()
+    new File(test, 'test.yeti').text = """module ${pkg}.test;
+
+m = load ${pkg}.mod${size.files - 1};
+m.f0 1 > 0;
+"""
+}
+
+return true
+
+} catch(Throwable e) {
+  e.printStackTrace()
+  return false
+}
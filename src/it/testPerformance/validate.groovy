@@ -0,0 +1,56 @@
+// Checks the recorded compiler runs of the generated modules against the
+// budgets in budgets.properties and writes the measures to
+// perf-result.properties.
+try {
+
+def budgets = new Properties()
+new File(basedir, 'budgets.properties')
+    .withInputStream { budgets.load(it) }
+def result = new Properties()
+def failures = []
+
+long wall = System.currentTimeMillis() -
+    Long.parseLong(new File(basedir, 'perf-start.txt').text.trim())
+result['wall'] = '' + wall
+if (wall > Long.parseLong(budgets['wall.budget']))
+    failures << "build took ${wall} ms, budget ${budgets['wall.budget']} ms"
+
+['mSmall', 'mMedium', 'mLarge'].each { module ->
+    assert new File(basedir, "${module}/target/classes").isDirectory()
+    assert new File(basedir, "${module}/target/site/yetidocs").isDirectory()
+    def statsFile = new File(basedir, "${module}/target/yeti-compile-stats.properties")
+    assert statsFile.exists()
+    def stats = new Properties()
+    statsFile.withInputStream { stats.load(it) }
+
+    ['YetiCompileMojo', 'YetiTestCompileMojo', 'YetiDocMojo'].each { mojo ->
+        assert stats["${mojo}.mode"] == 'fork' : "${module} ${mojo} did not fork"
+        ['millis', 'wallMillis', 'heap'].each { measure ->
+            def key = "${module}.${mojo}.${measure}"
+            def v = stats["${mojo}.${measure}"]
+            assert v != null : "no ${measure} of ${module} ${mojo} recorded"
+            long value = Long.parseLong(v)
+            result[key] = v
+            println "${key} = ${value}"
+
+            def budget = budgets["${key}.budget"]
+            assert budget != null : "no budget for ${key} in budgets.properties"
+            if (value > Long.parseLong(budget))
+                failures << "${key} is ${value}, budget ${budget}"
+        }
+    }
+}
+
+new File(basedir, 'perf-result.properties').withOutputStream {
+    result.store(it, 'testPerformance measures')
+}
+
+failures.each { println "PERFORMANCE BUDGET EXCEEDED: ${it}" }
+assert failures.isEmpty()
+
+return true
+
+} catch(Throwable e) {
+  e.printStackTrace()
+  return false
+}
@@ -0,0 +1,28 @@
+try {
+
+def reports = new File(basedir, 'target/surefire-reports')
+
+def passing = new File(reports, 'TEST-calc.calc_test.xml').text
+assert passing.contains('<testsuite name="calc.calc_test" tests="2" failures="0" errors="0"')
+assert passing.contains('name="add"')
+assert passing.contains('name="twice"')
+assert !passing.contains('<failure')
+
+def broken = new File(reports, 'TEST-calc.broken_test.xml').text
+assert broken.contains('<testsuite name="calc.broken_test" tests="2" failures="1" errors="0"')
+assert broken.contains('<failure message="twice 3 is not 7"')
+assert broken.contains('type="yeti.lang.FailureException"')
+
+//the module under test is no test module
+assert !new File(reports, 'TEST-calc.calc.xml').exists()
+
+def log = new File(basedir, 'build.log').text
+assert log.contains('Tests run: 4, Failures: 1, Errors: 0')
+assert log.contains('There are test failures in [calc.broken_test]')
+
+return true
+
+} catch(Throwable e) {
+  e.printStackTrace()
+  return false
+}
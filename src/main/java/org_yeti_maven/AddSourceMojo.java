@@ -32,6 +32,7 @@ import org.apache.maven.project.MavenProjectHelper;
  * @goal add-source
  * @phase initialize
  * @requiresDirectInvocation false
+ * @threadSafe
  */
 public class AddSourceMojo extends AbstractMojo {
 
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * The results of a JMH run (read from its JSON result file) and their
+ * comparison with a baseline stored as properties
+ * (benchmark:mode = score).
+ */
+public class BenchResults {
+
+    private final List<Result> results = new ArrayList<Result>();
+
+    /**
+     * Reads the JSON written by JMH with "-rf json" (JSON is read as YAML).
+     */
+    @SuppressWarnings("unchecked")
+    public static BenchResults read(File json) throws IOException {
+        BenchResults r = new BenchResults();
+        InputStream in = new FileInputStream(json);
+        Object data;
+        try {
+            data = new Yaml().load(new InputStreamReader(in, "UTF-8"));
+        } finally {
+            in.close();
+        }
+        if (!(data instanceof List)) {
+            return r;
+        }
+        for (Object o : (List<Object>) data) {
+            Map<String, Object> b = (Map<String, Object>) o;
+            Map<String, Object> metric =
+                (Map<String, Object>) b.get("primaryMetric");
+            r.results.add(new Result(String.valueOf(b.get("benchmark")),
+                        String.valueOf(b.get("mode")),
+                        number(metric.get("score")),
+                        number(metric.get("scoreError")),
+                        String.valueOf(metric.get("scoreUnit"))));
+        }
+        return r;
+    }
+
+    private static double number(Object o) {
+        if (o instanceof Number) {
+            return ((Number) o).doubleValue();
+        }
+        try {
+            return Double.parseDouble(String.valueOf(o));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Sets the baseline score of each result from the baseline file.
+     */
+    public void compare(File baselineFile) throws IOException {
+        if (!baselineFile.isFile()) {
+            return;
+        }
+        Properties baseline = new Properties();
+        InputStream in = new FileInputStream(baselineFile);
+        try {
+            baseline.load(in);
+        } finally {
+            in.close();
+        }
+        for (Result r : results) {
+            String v = baseline.getProperty(r.getKey());
+            if (v != null) {
+                r.baseline = number(v);
+            }
+        }
+    }
+
+    /**
+     * The results which are worse than their baseline by more than
+     * threshold percent.
+     */
+    public List<Result> regressions(double threshold) {
+        List<Result> r = new ArrayList<Result>();
+        for (Result result : results) {
+            if (result.getChange() * (result.isHigherBetter() ? -1 : 1)
+                    > threshold) {
+                r.add(result);
+            }
+        }
+        return r;
+    }
+
+    public void writeCsv(File file) throws IOException {
+        PrintWriter out = new PrintWriter(file, "UTF-8");
+        try {
+            out.println("benchmark,mode,score,error,unit,baseline,change%");
+            for (Result r : results) {
+                out.printf("%s,%s,%s,%s,%s,%s,%s%n", r.benchmark, r.mode,
+                        r.score, r.error, r.unit,
+                        Double.isNaN(r.baseline) ? "" : "" + r.baseline,
+                        Double.isNaN(r.getChange()) ? ""
+                            : String.format("%.2f", r.getChange()));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    public void writeBaseline(File file) throws IOException {
+        Properties p = new Properties();
+        for (Result r : results) {
+            p.setProperty(r.getKey(), String.valueOf(r.score));
+        }
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            p.store(out, "yeti:bench baseline (benchmark:mode = score)");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * One benchmark result.
+     */
+    public static class Result {
+        final String benchmark;
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+        double baseline = Double.NaN;
+
+        Result(String benchmark, String mode, double score, double error,
+                String unit) {
+            this.benchmark = benchmark;
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        public String getKey() {
+            return benchmark + ":" + mode;
+        }
+
+        /** Throughput gets better with a higher score, times with lower. */
+        public boolean isHigherBetter() {
+            return "thrpt".equals(mode);
+        }
+
+        /** The change to the baseline in percent or NaN. */
+        public double getChange() {
+            if (Double.isNaN(baseline) || baseline == 0) {
+                return Double.NaN;
+            }
+            return (score - baseline) * 100 / baseline;
+        }
+
+        public String toString() {
+            String s = String.format("%s (%s) %.3f +- %.3f %s",
+                    benchmark, mode, score, error, unit);
+            if (!Double.isNaN(getChange())) {
+                s += String.format(", baseline %.3f (%+.1f%%)",
+                        baseline, getChange());
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical files shared by all executions in the maven JVM. Each
+ * getCanonicalFile call goes to the file system, the same classpath
+ * entries and source directories are canonicalized by every module and
+ * mojo of a build.
+ */
+public class CanonicalPaths {
+
+    private static final ConcurrentHashMap<String, File> cache =
+        new ConcurrentHashMap<String, File>();
+
+    /**
+     * The canonical file of f or its absolute file if it can not be
+     * canonicalized.
+     */
+    public static File get(File f) {
+        String key = f.getAbsolutePath();
+        File r = cache.get(key);
+        if (r == null) {
+            try {
+                r = f.getCanonicalFile();
+            } catch (IOException exc) {
+                //not cached, it may work later
+                return f.getAbsoluteFile();
+            }
+            cache.put(key, r);
+        }
+        return r;
+    }
+}
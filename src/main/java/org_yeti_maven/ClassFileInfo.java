@@ -0,0 +1,259 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The sizes of a class file: bytes, constant pool entries, fields and
+ * methods, the names of the static methods and the classes it refers to.
+ * Reads only the class file structure, nothing is loaded.
+ */
+public class ClassFileInfo {
+
+    private String name;
+    private String superName;
+    private int size;
+    private int constantPoolCount;
+    private int fieldCount;
+    private int methodCount;
+    private String sourceFile;
+    private final List<String> staticMethods = new ArrayList<String>();
+    private final Set<String> references = new TreeSet<String>();
+
+    private ClassFileInfo() {
+    }
+
+    public static ClassFileInfo read(File classFile) throws IOException {
+        InputStream in = new FileInputStream(classFile);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    public static ClassFileInfo read(InputStream classFile)
+            throws IOException {
+        byte[] bytes = readAll(classFile);
+        ClassFileInfo info = new ClassFileInfo();
+        info.size = bytes.length;
+        info.parse(new DataInputStream(new ByteArrayInputStream(bytes)));
+        return info;
+    }
+
+    private void parse(DataInputStream in) throws IOException {
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("not a class file");
+        }
+        in.readUnsignedShort(); //minor
+        in.readUnsignedShort(); //major
+        constantPoolCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+        int[] classNames = new int[constantPoolCount];
+        List<Integer> descriptors = new ArrayList<Integer>();
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+            case 1: //utf8
+                utf8[i] = in.readUTF();
+                break;
+            case 7: //class
+                classNames[i] = in.readUnsignedShort();
+                break;
+            case 16: //method type
+                descriptors.add(in.readUnsignedShort());
+                break;
+            case 12: //name and type
+                in.readUnsignedShort();
+                descriptors.add(in.readUnsignedShort());
+                break;
+            case 8: //string
+            case 19: //module
+            case 20: //package
+                in.readUnsignedShort();
+                break;
+            case 15: //method handle
+                in.readUnsignedByte();
+                in.readUnsignedShort();
+                break;
+            case 3: //int
+            case 4: //float
+            case 9: //field ref
+            case 10: //method ref
+            case 11: //interface method ref
+            case 17: //dynamic
+            case 18: //invoke dynamic
+                in.readInt();
+                break;
+            case 5: //long
+            case 6: //double
+                in.readLong();
+                i++;
+                break;
+            default:
+                throw new IOException("unknown constant pool tag " + tag);
+            }
+        }
+        in.readUnsignedShort(); //access
+        name = utf8[classNames[in.readUnsignedShort()]];
+        int superIndex = in.readUnsignedShort();
+        superName = superIndex == 0 ? null : utf8[classNames[superIndex]];
+        int interfaces = in.readUnsignedShort();
+        for (int i = 0; i < interfaces; i++) {
+            in.readUnsignedShort();
+        }
+        fieldCount = skipMembers(in, utf8, null, descriptors);
+        methodCount = skipMembers(in, utf8, staticMethods, descriptors);
+        int attributes = in.readUnsignedShort();
+        for (int a = 0; a < attributes; a++) {
+            String attribute = utf8[in.readUnsignedShort()];
+            int len = in.readInt();
+            if ("SourceFile".equals(attribute) && len == 2) {
+                sourceFile = utf8[in.readUnsignedShort()];
+            } else if (in.skipBytes(len) != len) {
+                throw new IOException("truncated class file");
+            }
+        }
+
+        for (int i = 1; i < constantPoolCount; i++) {
+            if (classNames[i] != 0) {
+                String c = utf8[classNames[i]];
+                if (c.startsWith("[")) {
+                    addDescriptor(c);
+                } else {
+                    references.add(c);
+                }
+            }
+        }
+        for (Integer d : descriptors) {
+            addDescriptor(utf8[d]);
+        }
+        references.remove(name);
+    }
+
+    /** adds the classes (Lname;) of a field or method descriptor */
+    private void addDescriptor(String descriptor) {
+        if (descriptor == null) {
+            return;
+        }
+        int i = descriptor.indexOf('L');
+        while (i >= 0) {
+            int end = descriptor.indexOf(';', i);
+            if (end < 0) {
+                return;
+            }
+            references.add(descriptor.substring(i + 1, end));
+            i = descriptor.indexOf('L', end);
+        }
+    }
+
+    /**
+     * Skips the fields or methods, the names of the static ones are added
+     * to statics if not null.
+     */
+    private static int skipMembers(DataInputStream in, String[] utf8,
+            List<String> statics, List<Integer> descriptors)
+            throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int access = in.readUnsignedShort();
+            int name = in.readUnsignedShort();
+            descriptors.add(in.readUnsignedShort());
+            if (statics != null && (access & 0x0008) != 0) {
+                statics.add(utf8[name]);
+            }
+            int attributes = in.readUnsignedShort();
+            for (int a = 0; a < attributes; a++) {
+                in.readUnsignedShort();
+                int len = in.readInt();
+                if (in.skipBytes(len) != len) {
+                    throw new IOException("truncated class file");
+                }
+            }
+        }
+        return count;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /** The internal name (ie foo/bar$1). */
+    public String getName() {
+        return name;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getConstantPoolCount() {
+        return constantPoolCount;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * The name of the source file (SourceFile attribute, ie foo.yeti) or
+     * null if the class file does not have it.
+     */
+    public String getSourceFile() {
+        return sourceFile;
+    }
+
+    public int getMethodCount() {
+        return methodCount;
+    }
+
+    /**
+     * Wheter the class has a static method of that name (ie eval of a yeti
+     * module).
+     */
+    public boolean hasStaticMethod(String name) {
+        return staticMethods.contains(name);
+    }
+
+    /**
+     * The internal names of the classes this class refers to in its
+     * constant pool and member descriptors (without itself).
+     */
+    public Set<String> getReferences() {
+        return references;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * The yeti compiler rejected the sources (a compile or type error), as
+ * opposed to failing for another reason.
+ */
+public class CompileFailedException extends MojoExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CompileFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the yeti compiles running at the same time in the maven JVM (ie
+ * with mvn -T) by a number of compiles and by the estimated heap of the
+ * in-process compiles. Waiting compiles are admitted in arrival order.
+ *
+ * The limits are taken from the first execution which uses the scheduler,
+ * as it is shared by all modules of the build.
+ */
+public class CompileScheduler {
+
+    private static final long MB = 1024 * 1024;
+    private static CompileScheduler instance;
+
+    private final Semaphore compiles;
+    private final Semaphore heapMb;
+    private final int maxCompiles;
+    private final int budgetMb;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private CompileScheduler(int maxCompiles, long heapBudget) {
+        this.maxCompiles = maxCompiles;
+        this.budgetMb = heapBudget > 0 ? (int) (heapBudget / MB) : 0;
+        compiles = maxCompiles > 0 ? new Semaphore(maxCompiles, true) : null;
+        heapMb = budgetMb > 0 ? new Semaphore(budgetMb, true) : null;
+    }
+
+    /**
+     * The scheduler of this JVM.
+     *
+     * @param maxCompiles the maximum number of parallel compiles or 0
+     * @param heapBudget the heap in-process compiles may use together or 0
+     */
+    public static synchronized CompileScheduler get(int maxCompiles,
+            long heapBudget) {
+        if (instance == null) {
+            instance = new CompileScheduler(maxCompiles, heapBudget);
+        }
+        return instance;
+    }
+
+    /** The scheduler of this JVM or null if no compile used it yet. */
+    public static synchronized CompileScheduler getInstance() {
+        return instance;
+    }
+
+    /** The number of compiles waiting for admission. */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public boolean isLimited() {
+        return compiles != null || heapMb != null;
+    }
+
+    /**
+     * Waits until the compile may run.
+     *
+     * @param heap the estimated heap of the compile (0 for forked compiles)
+     * @return the permit to release after the compile
+     */
+    public Permit acquire(long heap) throws InterruptedException {
+        int mb = 0;
+        if (heapMb != null && heap > 0) {
+            //a compile bigger than the budget runs alone
+            mb = (int) Math.min(budgetMb, Math.max(1, heap / MB));
+        }
+        long t0 = System.currentTimeMillis();
+        queued.incrementAndGet();
+        try {
+            if (compiles != null) {
+                compiles.acquire();
+            }
+            if (mb > 0) {
+                try {
+                    heapMb.acquire(mb);
+                } catch (InterruptedException ex) {
+                    if (compiles != null) {
+                        compiles.release();
+                    }
+                    throw ex;
+                }
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+        return new Permit(mb, System.currentTimeMillis() - t0);
+    }
+
+    public String toString() {
+        return "max " + (maxCompiles > 0 ? "" + maxCompiles : "unlimited")
+            + " compiles, heap budget "
+            + (budgetMb > 0 ? budgetMb + " MB" : "unlimited");
+    }
+
+    /**
+     * An admitted compile.
+     */
+    public class Permit {
+        private final int mb;
+        private final long waited;
+        private boolean released = false;
+
+        Permit(int mb, long waited) {
+            this.mb = mb;
+            this.waited = waited;
+        }
+
+        /** How long the compile waited for admission in ms. */
+        public long getWaited() {
+            return waited;
+        }
+
+        public synchronized void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (mb > 0) {
+                heapMb.release(mb);
+            }
+            if (compiles != null) {
+                compiles.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * The recorded cost of past yeti compiler runs (in
+ * target/yeti-compile-stats.properties) and the estimates based on them.
+ * Each kind of compile (compile, testCompile ...) is recorded under its
+ * own key.
+ */
+public class CompileStats {
+
+    /** heap the compiler needs without any source */
+    static final long BASE_HEAP = 48L * 1024 * 1024;
+    /** heap per byte of source if no run is recorded yet */
+    static final long HEAP_PER_SOURCE_BYTE = 150;
+    /** heap per classpath entry (type information read from it) */
+    static final long HEAP_PER_CLASSPATH_ENTRY = 256L * 1024;
+
+    private final File file;
+    private final Properties props = new Properties();
+
+    private CompileStats(File file) {
+        this.file = file;
+    }
+
+    public static synchronized CompileStats load(File file) throws IOException {
+        CompileStats s = new CompileStats(file);
+        if (file.isFile()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                s.props.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return s;
+    }
+
+    public synchronized void save() throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "yeti compiler runs");
+        } finally {
+            out.close();
+        }
+    }
+
+    public long get(String key, String name) {
+        String v = props.getProperty(key + "." + name);
+        return v == null ? -1 : Long.parseLong(v);
+    }
+
+    /**
+     * Records a run.
+     *
+     * @param heap the heap the run needed or -1 if not measured. Only
+     *        forked runs are measured (in their own JVM), the heap of an
+     *        in-process run can not be told apart from the rest of maven.
+     */
+    public void record(String key, long sources, long sourceBytes,
+            long millis, long heap, boolean forked) {
+        props.setProperty(key + ".sources", String.valueOf(sources));
+        props.setProperty(key + ".sourceBytes", String.valueOf(sourceBytes));
+        props.setProperty(key + ".millis", String.valueOf(millis));
+        props.setProperty(key + ".mode", forked ? "fork" : "inProcess");
+        if (heap > 0) {
+            props.setProperty(key + ".heap", String.valueOf(heap));
+            props.setProperty(key + ".heapSourceBytes",
+                    String.valueOf(sourceBytes));
+        }
+    }
+
+    /**
+     * Records the wall time of the execution of the last run.
+     */
+    public void recordWall(String key, long millis) {
+        props.setProperty(key + ".wallMillis", String.valueOf(millis));
+    }
+
+    /**
+     * The estimated heap a run over sourceBytes needs. Scaled from the last
+     * measured (forked) run or else guessed from the source and classpath
+     * size.
+     */
+    public long estimateHeap(String key, long sourceBytes,
+            int classpathEntries) {
+        long heap = get(key, "heap");
+        long measuredBytes = get(key, "heapSourceBytes");
+        if (heap > 0 && measuredBytes > 0) {
+            return Math.max(BASE_HEAP,
+                    (long) (heap * ((double) sourceBytes / measuredBytes)));
+        }
+        return BASE_HEAP + sourceBytes * HEAP_PER_SOURCE_BYTE
+            + classpathEntries * HEAP_PER_CLASSPATH_ENTRY;
+    }
+
+    /**
+     * The estimated time of a run over sourceBytes or -1 if nothing is
+     * recorded.
+     */
+    public long estimateMillis(String key, long sourceBytes) {
+        long millis = get(key, "millis");
+        long measuredBytes = get(key, "sourceBytes");
+        if (millis < 0 || measuredBytes <= 0) {
+            return -1;
+        }
+        return (long) (millis * ((double) sourceBytes / measuredBytes));
+    }
+
+    /** The number of source files in the compiler arguments. */
+    public static int sourceCount(String[] args) {
+        int n = 0;
+        for (String arg : args) {
+            if (isSource(arg)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** The size of the source files in the compiler arguments. */
+    public static long sourceBytes(String[] args) {
+        long bytes = 0;
+        for (String arg : args) {
+            if (isSource(arg)) {
+                bytes += new File(arg).length();
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isSource(String arg) {
+        return arg.endsWith(".yeti") || arg.endsWith(".java");
+    }
+
+    /** The heap which is currently free for a compile. */
+    public static long heapHeadroom() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+    }
+}
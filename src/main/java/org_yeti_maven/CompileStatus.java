@@ -0,0 +1,200 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live status and cumulative statistics of the yeti compiler runs in the
+ * maven JVM. Registered as MBean org.yeti:type=YetiMavenPlugin,name=CompileStatus
+ * so builds can be watched with jconsole or a JMX exporter.
+ */
+public class CompileStatus implements CompileStatusMBean {
+
+    public static final String OBJECT_NAME =
+        "org.yeti:type=YetiMavenPlugin,name=CompileStatus";
+
+    private static CompileStatus instance;
+
+    private final List<Run> running = new ArrayList<Run>();
+    private final Map<ClassLoader, Boolean> loaders =
+        new WeakHashMap<ClassLoader, Boolean>();
+    private long compileCount;
+    private long compiledSources;
+    private long compileMillis;
+    private long docMillis;
+    private long resolveMillis;
+    private long lastHeap = -1;
+
+    /**
+     * The status of this JVM. Registers the MBean on first use, replacing
+     * the one a previous plugin realm (an older build in the same JVM or
+     * another plugin version) left behind.
+     */
+    public static synchronized CompileStatus get() {
+        if (instance == null) {
+            instance = new CompileStatus();
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(instance, name);
+            } catch (Exception ex) {
+                //no jmx - the statistics are just not visible
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a started compiler run.
+     *
+     * @param heap the estimated heap for in-process runs or -1
+     */
+    public synchronized Run start(String name, int sources, long heap) {
+        Run r = new Run(name, sources, heap);
+        running.add(r);
+        return r;
+    }
+
+    public synchronized void addClassLoader(ClassLoader cl) {
+        loaders.put(cl, Boolean.TRUE);
+    }
+
+    public synchronized void addResolveMillis(long millis) {
+        resolveMillis += millis;
+    }
+
+    private synchronized void finish(Run r, boolean doc, long heap) {
+        running.remove(r);
+        long millis = System.currentTimeMillis() - r.start;
+        if (doc) {
+            docMillis += millis;
+        } else {
+            compileMillis += millis;
+        }
+        compileCount++;
+        compiledSources += r.sources;
+        if (heap > 0) {
+            lastHeap = heap;
+        }
+    }
+
+    public synchronized String[] getRunningCompiles() {
+        long now = System.currentTimeMillis();
+        String[] r = new String[running.size()];
+        for (int i = 0; i < r.length; i++) {
+            Run run = running.get(i);
+            r[i] = String.format("%s: %d sources, %d ms", run.name,
+                    run.sources, now - run.start);
+        }
+        return r;
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    public int getQueuedCount() {
+        CompileScheduler s = CompileScheduler.getInstance();
+        return s == null ? 0 : s.getQueued();
+    }
+
+    public synchronized long getRunningSourceCount() {
+        long n = 0;
+        for (Run r : running) {
+            n += r.sources;
+        }
+        return n;
+    }
+
+    public synchronized long getLongestRunningMillis() {
+        long now = System.currentTimeMillis();
+        long max = 0;
+        for (Run r : running) {
+            max = Math.max(max, now - r.start);
+        }
+        return max;
+    }
+
+    public synchronized long getCompileCount() {
+        return compileCount;
+    }
+
+    public synchronized long getCompiledSourceCount() {
+        return compiledSources;
+    }
+
+    public synchronized long getCompileMillis() {
+        return compileMillis;
+    }
+
+    public synchronized long getDocMillis() {
+        return docMillis;
+    }
+
+    public synchronized long getResolveMillis() {
+        return resolveMillis;
+    }
+
+    public synchronized int getClassLoaderCount() {
+        return loaders.size();
+    }
+
+    public synchronized long getRunningCompilerHeap() {
+        long heap = 0;
+        for (Run r : running) {
+            heap += Math.max(0, r.heap);
+        }
+        return heap;
+    }
+
+    public synchronized long getLastCompilerHeap() {
+        return lastHeap;
+    }
+
+    /**
+     * A running compile.
+     */
+    public class Run {
+        final String name;
+        final int sources;
+        final long heap;
+        final long start = System.currentTimeMillis();
+
+        Run(String name, int sources, long heap) {
+            this.name = name;
+            this.sources = sources;
+            this.heap = heap;
+        }
+
+        /**
+         * @param heap the measured heap or -1
+         */
+        public void finish(boolean doc, long heap) {
+            CompileStatus.this.finish(this, doc, heap);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+/**
+ * JMX view of the yeti compiler runs in the maven JVM.
+ */
+public interface CompileStatusMBean {
+
+    /** The running compiler runs with their source count and elapsed time */
+    String[] getRunningCompiles();
+
+    int getRunningCount();
+
+    /** The compiles waiting for the compile scheduler */
+    int getQueuedCount();
+
+    /** The sources of the running compiles */
+    long getRunningSourceCount();
+
+    /** The elapsed time of the longest running compile */
+    long getLongestRunningMillis();
+
+    long getCompileCount();
+
+    long getCompiledSourceCount();
+
+    /** Cumulative time of compile, testCompile, check ... runs */
+    long getCompileMillis();
+
+    /** Cumulative time of doc runs */
+    long getDocMillis();
+
+    /** Cumulative time of resolving the yeti compiler artifacts */
+    long getResolveMillis();
+
+    /** Compiler classloaders which are not garbage collected yet */
+    int getClassLoaderCount();
+
+    /** The estimated heap of the running in-process compiles */
+    long getRunningCompilerHeap();
+
+    /** The heap the last forked compile needed, measured in its JVM */
+    long getLastCompilerHeap();
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A SHA-1 over text and the state of files, used as key of cached
+ * compiler output. Files are taken by path, size and modification time,
+ * directories by their newest file, so the content is not read (unless
+ * addContent is used).
+ */
+public class Fingerprint {
+
+    private final MessageDigest digest;
+
+    public Fingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public Fingerprint add(String text) {
+        try {
+            digest.update(text.getBytes("UTF-8"));
+            digest.update((byte) 0);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return this;
+    }
+
+    public Fingerprint addFile(File f) {
+        add(f.getAbsolutePath());
+        if (f.isDirectory()) {
+            long[] newest = new long[2];
+            newest(f, newest);
+            add(newest[0] + ":" + newest[1]);
+        } else {
+            add(f.length() + ":" + f.lastModified());
+        }
+        return this;
+    }
+
+    /**
+     * Adds the bytes of the file (for outputs which are written again with
+     * the same content).
+     */
+    public Fingerprint addContent(File f) throws IOException {
+        InputStream in = new FileInputStream(f);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                digest.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        digest.update((byte) 0);
+        return this;
+    }
+
+    /**
+     * Adds the classpath entries in sorted order.
+     */
+    public Fingerprint addClasspath(Collection<String> classpath) {
+        List<String> sorted = new ArrayList<String>(classpath);
+        Collections.sort(sorted);
+        for (String e : sorted) {
+            addFile(new File(e));
+        }
+        return this;
+    }
+
+    /** newest modification time and number of files in dir */
+    private static void newest(File dir, long[] newest) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.isDirectory()) {
+                newest(f, newest);
+            } else {
+                newest[0] = Math.max(newest[0], f.lastModified());
+                newest[1]++;
+            }
+        }
+    }
+
+    /** The hex SHA-1, the fingerprint can not be used afterwards. */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summarizes flight recordings of the yeti compiler from the JSON output of
+ * the JDK "jfr print --json" tool: the hottest methods of the execution
+ * samples, the allocation hotspots, the GC pauses and the file I/O.
+ */
+public class JfrSummary {
+
+    /** The events to give "jfr print --events". */
+    public static final String EVENTS = "jdk.ExecutionSample,"
+        + "jdk.ObjectAllocationSample,jdk.ObjectAllocationInNewTLAB,"
+        + "jdk.GarbageCollection,jdk.FileRead,jdk.FileWrite";
+
+    private static final long MS = 1000 * 1000;
+
+    private int recordings;
+    private long samples;
+    private final Counter topFrames = new Counter();
+    private final Counter compilerFrames = new Counter();
+    private final Counter allocByClass = new Counter();
+    private final Counter allocBySite = new Counter();
+    private final Counter gcPauses = new Counter();
+    private final Counter gcCounts = new Counter();
+    private long longestPause;
+    private final Counter readBytes = new Counter();
+    private final Counter readNanos = new Counter();
+    private final Counter writeBytes = new Counter();
+    private final Counter writeNanos = new Counter();
+
+    /**
+     * Adds the events of one recording printed by "jfr print --json".
+     */
+    public void read(Reader in) throws IOException {
+        recordings++;
+        JsonReader json = new JsonReader(in);
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!json.nextName().equals("recording")) {
+                json.readValue();
+                continue;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!json.nextName().equals("events")) {
+                    json.readValue();
+                    continue;
+                }
+                //the events one by one, a recording can be big
+                json.beginArray();
+                while (json.hasNext()) {
+                    Map<String, Object> event = map(json.readValue());
+                    event(event.get("type"), map(event.get("values")));
+                }
+                json.endArray();
+            }
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    private void event(Object event, Map<String, Object> values) {
+        List<String> stack = stack(values);
+        String site = stack.isEmpty() ? "<no stack>" : stack.get(0);
+        if ("jdk.ExecutionSample".equals(event)) {
+            samples++;
+            topFrames.add(site, 1);
+            for (String frame : stack) {
+                if (frame.startsWith("yeti.")) {
+                    compilerFrames.add(frame, 1);
+                    break;
+                }
+            }
+        } else if ("jdk.ObjectAllocationSample".equals(event)
+                || "jdk.ObjectAllocationInNewTLAB".equals(event)) {
+            Object weight = values.get("weight");
+            if (weight == null) {
+                weight = values.get("tlabSize");
+            }
+            long bytes = number(weight);
+            allocByClass.add(className(values.get("objectClass")), bytes);
+            allocBySite.add(site, bytes);
+        } else if ("jdk.GarbageCollection".equals(event)) {
+            Object pause = values.get("sumOfPauses");
+            if (pause == null) {
+                pause = values.get("duration");
+            }
+            String name = string(values.get("name"));
+            gcPauses.add(name, parseDuration(pause));
+            gcCounts.add(name, 1);
+            Object longest = values.get("longestPause");
+            longestPause = Math.max(longestPause,
+                    parseDuration(longest == null ? pause : longest));
+        } else if ("jdk.FileRead".equals(event)) {
+            String path = string(values.get("path"));
+            readBytes.add(path, number(values.get("bytesRead")));
+            readNanos.add(path, parseDuration(values.get("duration")));
+        } else if ("jdk.FileWrite".equals(event)) {
+            String path = string(values.get("path"));
+            writeBytes.add(path, number(values.get("bytesWritten")));
+            writeNanos.add(path, parseDuration(values.get("duration")));
+        }
+    }
+
+    /**
+     * Writes the summary with the top entries of each list.
+     */
+    public void write(PrintWriter out, int top) {
+        out.printf("yeti compiler profile of %d recording(s)%n", recordings);
+
+        out.printf("%nTop methods (%d execution samples):%n", samples);
+        for (Map.Entry<String, long[]> e : topFrames.top(top)) {
+            out.printf("  %5.1f%% %7d  %s%n", percent(e, samples),
+                    e.getValue()[0], e.getKey());
+        }
+        out.printf("%nTop yeti compiler methods (innermost yeti frame):%n");
+        for (Map.Entry<String, long[]> e : compilerFrames.top(top)) {
+            out.printf("  %5.1f%% %7d  %s%n", percent(e, samples),
+                    e.getValue()[0], e.getKey());
+        }
+
+        out.printf("%nAllocation hotspots by class (sampled bytes):%n");
+        for (Map.Entry<String, long[]> e : allocByClass.top(top)) {
+            out.printf("  %10s  %s%n", bytes(e.getValue()[0]), e.getKey());
+        }
+        out.printf("%nAllocation hotspots by site (sampled bytes):%n");
+        for (Map.Entry<String, long[]> e : allocBySite.top(top)) {
+            out.printf("  %10s  %s%n", bytes(e.getValue()[0]), e.getKey());
+        }
+
+        out.printf("%nGC pauses: %d collections, %.1f ms paused, "
+                + "longest %.1f ms%n", gcCounts.total(),
+                (double) gcPauses.total() / MS, (double) longestPause / MS);
+        for (Map.Entry<String, long[]> e : gcPauses.top(top)) {
+            out.printf("  %-20s %5d collections %10.1f ms%n", e.getKey(),
+                    gcCounts.get(e.getKey()), (double) e.getValue()[0] / MS);
+        }
+
+        out.printf("%nFile I/O (operations above the recording threshold):%n");
+        out.printf("  read  %10s %10.1f ms%n", bytes(readBytes.total()),
+                (double) readNanos.total() / MS);
+        for (Map.Entry<String, long[]> e : readNanos.top(top)) {
+            out.printf("    %10s %10.1f ms  %s%n",
+                    bytes(readBytes.get(e.getKey())),
+                    (double) e.getValue()[0] / MS, e.getKey());
+        }
+        out.printf("  write %10s %10.1f ms%n", bytes(writeBytes.total()),
+                (double) writeNanos.total() / MS);
+        for (Map.Entry<String, long[]> e : writeNanos.top(top)) {
+            out.printf("    %10s %10.1f ms  %s%n",
+                    bytes(writeBytes.get(e.getKey())),
+                    (double) e.getValue()[0] / MS, e.getKey());
+        }
+        out.flush();
+    }
+
+    private static double percent(Map.Entry<String, long[]> e, long total) {
+        return total == 0 ? 0 : 100.0 * e.getValue()[0] / total;
+    }
+
+    /** The frames of the stack trace as class.method, innermost first. */
+    static List<String> stack(Map<String, Object> values) {
+        List<String> r = new ArrayList<String>();
+        Object frames = map(values.get("stackTrace")).get("frames");
+        if (frames instanceof List) {
+            for (Object frame : (List<?>) frames) {
+                Map<String, Object> method = map(map(frame).get("method"));
+                r.add(className(method.get("type")) + "."
+                        + string(method.get("name")));
+            }
+        }
+        return r;
+    }
+
+    /** The name of a class value, ie java.lang.String. */
+    static String className(Object type) {
+        return string(map(type).get("name")).replace('/', '.');
+    }
+
+    static String string(Object value) {
+        return value instanceof String ? (String) value : "<unknown>";
+    }
+
+    static long number(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> map(Object value) {
+        if (value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Parses a duration as jfr prints it in JSON, ISO-8601 like "PT0.0125S"
+     * or "PT1M0.5S", to nanoseconds.
+     */
+    static long parseDuration(Object value) {
+        if (!(value instanceof String) || !((String) value).startsWith("PT")) {
+            return 0;
+        }
+        String s = ((String) value).substring(2);
+        double nanos = 0;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == 'H' || c == 'M' || c == 'S') {
+                double v;
+                try {
+                    v = Double.parseDouble(s.substring(start, i));
+                } catch (NumberFormatException ex) {
+                    return 0;
+                }
+                nanos += v * (c == 'H' ? 3600 : (c == 'M' ? 60 : 1))
+                    * 1000 * MS;
+                start = i + 1;
+            }
+        }
+        return (long) nanos;
+    }
+
+    static String bytes(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.1f MB", (double) bytes / (1024 * 1024));
+        }
+        if (bytes >= 1024) {
+            return String.format("%.1f kB", (double) bytes / 1024);
+        }
+        return bytes + " B";
+    }
+
+    private static class Counter {
+        private final Map<String, long[]> counts =
+            new HashMap<String, long[]>();
+        private long total;
+
+        void add(String key, long value) {
+            long[] c = counts.get(key);
+            if (c == null) {
+                c = new long[1];
+                counts.put(key, c);
+            }
+            c[0] += value;
+            total += value;
+        }
+
+        long get(String key) {
+            long[] c = counts.get(key);
+            return c == null ? 0 : c[0];
+        }
+
+        long total() {
+            return total;
+        }
+
+        List<Map.Entry<String, long[]>> top(int n) {
+            List<Map.Entry<String, long[]>> r =
+                new ArrayList<Map.Entry<String, long[]>>(counts.entrySet());
+            Collections.sort(r, new Comparator<Map.Entry<String, long[]>>() {
+                public int compare(Map.Entry<String, long[]> a,
+                        Map.Entry<String, long[]> b) {
+                    long x = a.getValue()[0];
+                    long y = b.getValue()[0];
+                    return x > y ? -1 : (x < y ? 1 : 0);
+                }
+            });
+            return r.size() > n ? r.subList(0, n) : r;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small streaming JSON reader. Big arrays (ie the events of a flight
+ * recording) can be walked element by element with beginArray/hasNext,
+ * each element is read as a tree of Map, List, String, Long, Double,
+ * Boolean and null.
+ */
+public class JsonReader {
+
+    private final Reader in;
+    private int peeked = -2;
+
+    public JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+    }
+
+    public void endObject() throws IOException {
+        expect('}');
+    }
+
+    public void beginArray() throws IOException {
+        expect('[');
+    }
+
+    public void endArray() throws IOException {
+        expect(']');
+    }
+
+    /**
+     * Wheter the current object or array has another member, skips the
+     * comma before it.
+     */
+    public boolean hasNext() throws IOException {
+        int c = peekToken();
+        if (c == ',') {
+            read();
+            return true;
+        }
+        return c != '}' && c != ']' && c != -1;
+    }
+
+    /** The name of the next member of an object. */
+    public String nextName() throws IOException {
+        if (peekToken() != '"') {
+            throw error("member name");
+        }
+        read();
+        String name = readString();
+        expect(':');
+        return name;
+    }
+
+    /** Reads the next value. */
+    public Object readValue() throws IOException {
+        int c = peekToken();
+        if (c == '{') {
+            read();
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            while (hasNext()) {
+                String name = nextName();
+                map.put(name, readValue());
+            }
+            endObject();
+            return map;
+        }
+        if (c == '[') {
+            read();
+            List<Object> list = new ArrayList<Object>();
+            while (hasNext()) {
+                list.add(readValue());
+            }
+            endArray();
+            return list;
+        }
+        if (c == '"') {
+            read();
+            return readString();
+        }
+        String word = readWord();
+        if (word.equals("null")) {
+            return null;
+        }
+        if (word.equals("true") || word.equals("false")) {
+            return Boolean.valueOf(word);
+        }
+        try {
+            if (word.indexOf('.') < 0 && word.indexOf('e') < 0
+                    && word.indexOf('E') < 0) {
+                return Long.valueOf(word);
+            }
+            return Double.valueOf(word);
+        } catch (NumberFormatException ex) {
+            throw error("value");
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder s = new StringBuilder();
+        for (int c = read(); c != '"'; c = read()) {
+            if (c == -1) {
+                throw error("end of string");
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                case 'b': c = '\b'; break;
+                case 'f': c = '\f'; break;
+                case 'n': c = '\n'; break;
+                case 'r': c = '\r'; break;
+                case 't': c = '\t'; break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < 4; i++) {
+                        hex[i] = (char) read();
+                    }
+                    try {
+                        c = Integer.parseInt(new String(hex), 16);
+                    } catch (NumberFormatException ex) {
+                        throw error("unicode escape");
+                    }
+                    break;
+                case -1:
+                    throw error("escape");
+                default:
+                    //\" \\ \/ stand for themselves
+                }
+            }
+            s.append((char) c);
+        }
+        return s.toString();
+    }
+
+    private String readWord() throws IOException {
+        StringBuilder s = new StringBuilder();
+        for (int c = peek(); c != -1 && c != ',' && c != '}' && c != ']'
+                && !Character.isWhitespace(c); c = peek()) {
+            s.append((char) read());
+        }
+        if (s.length() == 0) {
+            throw error("value");
+        }
+        return s.toString();
+    }
+
+    private void expect(char c) throws IOException {
+        if (peekToken() != c) {
+            throw error("'" + c + "'");
+        }
+        read();
+    }
+
+    private int peekToken() throws IOException {
+        while (Character.isWhitespace(peek())) {
+            read();
+        }
+        return peek();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = in.read();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = -2;
+        return c;
+    }
+
+    private IOException error(String expected) throws IOException {
+        int c = peek();
+        return new IOException("malformed JSON, expected " + expected
+                + " but got " + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The dependencies of the yeti modules of a project found by a lexical
+ * scan of the sources (no compile): the modules they load and the java
+ * classes they refer to. The scan of each source is cached by the hash of
+ * its content. Reports the cycles and the critical path, the longest chain
+ * (by source size) of modules which have to be compiled one after the
+ * other.
+ */
+public class ModuleGraph {
+
+    private static final String FILE = "#file\t";
+
+    /** A yeti source and what it refers to. */
+    public static class Module {
+        String name;
+        String source;
+        long bytes;
+        final List<String> loads = new ArrayList<String>();
+        final List<String> classes = new ArrayList<String>();
+    }
+
+    /** module name -> module, sorted */
+    private final Map<String, Module> modules = new TreeMap<String, Module>();
+    private int scanned;
+    private List<List<String>> components;
+
+    private ModuleGraph() {
+    }
+
+    /**
+     * Scans the yeti sources, using and updating the cache file.
+     */
+    public static ModuleGraph build(List<String> sourceFiles,
+            List<File> sourceDirs, File cacheFile) throws IOException {
+        ModuleGraph g = new ModuleGraph();
+        Map<String, Module> cache = load(cacheFile);
+        Map<String, Module> current = new TreeMap<String, Module>();
+        for (String s : sourceFiles) {
+            if (!s.endsWith(".yeti")) {
+                continue;
+            }
+            File f = new File(s);
+            String key = f.getPath() + "\t"
+                + new Fingerprint().addContent(f);
+            Module m = cache.get(key);
+            if (m == null) {
+                m = scan(f, sourceDirs);
+                g.scanned++;
+            }
+            current.put(key, m);
+            g.modules.put(m.name, m);
+        }
+        if (g.scanned > 0 || current.size() != cache.size()) {
+            save(current, cacheFile);
+        }
+        return g;
+    }
+
+    private static Module scan(File f, List<File> sourceDirs)
+            throws IOException {
+        String text = YetiSources.read(f);
+        Module m = new Module();
+        m.name = YetiSources.moduleName(text);
+        if (m.name == null) {
+            m.name = YetiSources.classPath(f, sourceDirs).replace('/', '.');
+        }
+        m.source = f.getPath();
+        m.bytes = f.length();
+        m.loads.addAll(YetiSources.loads(text));
+        m.classes.addAll(YetiSources.javaReferences(text));
+        return m;
+    }
+
+    /** The number of sources which were (re)scanned. */
+    public int getScanned() {
+        return scanned;
+    }
+
+    public int size() {
+        return modules.size();
+    }
+
+    /** The loads of the modules of the project (module -> module edges). */
+    private List<String> internalLoads(Module m) {
+        List<String> r = new ArrayList<String>();
+        for (String l : m.loads) {
+            if (modules.containsKey(l) && !l.equals(m.name)) {
+                r.add(l);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * The strongly connected components, dependencies before the modules
+     * which load them.
+     */
+    private List<List<String>> components() {
+        if (components == null) {
+            components = StronglyConnected.components(modules.keySet(),
+                    new StronglyConnected.Graph<String>() {
+                        public List<String> dependencies(String m) {
+                            return internalLoads(modules.get(m));
+                        }
+                    });
+            for (List<String> c : components) {
+                Collections.sort(c);
+            }
+        }
+        return components;
+    }
+
+    /** The modules loading each other in a cycle. */
+    public List<List<String>> cycles() {
+        List<List<String>> r = new ArrayList<List<String>>();
+        for (List<String> c : components()) {
+            if (c.size() > 1) {
+                r.add(c);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * The longest chain of modules (by bytes of source) where each one
+     * loads the one before, in compile order. Modules in a cycle count as
+     * one step.
+     */
+    public List<String> criticalPath() {
+        Map<String, Integer> componentOf = new HashMap<String, Integer>();
+        List<List<String>> cs = components();
+        for (int i = 0; i < cs.size(); i++) {
+            for (String m : cs.get(i)) {
+                componentOf.put(m, i);
+            }
+        }
+        //components are in dependency order, so a single pass will do
+        long[] length = new long[cs.size()];
+        int[] previous = new int[cs.size()];
+        int longest = -1;
+        for (int i = 0; i < cs.size(); i++) {
+            long bytes = 0;
+            previous[i] = -1;
+            long before = 0;
+            for (String m : cs.get(i)) {
+                bytes += modules.get(m).bytes;
+                for (String l : internalLoads(modules.get(m))) {
+                    int d = componentOf.get(l);
+                    if (d != i && length[d] > before) {
+                        before = length[d];
+                        previous[i] = d;
+                    }
+                }
+            }
+            length[i] = before + bytes;
+            if (longest < 0 || length[i] > length[longest]) {
+                longest = i;
+            }
+        }
+        List<String> path = new ArrayList<String>();
+        for (int i = longest; i >= 0; i = previous[i]) {
+            path.addAll(0, cs.get(i));
+        }
+        return path;
+    }
+
+    /** The bytes of the sources of the modules. */
+    public long bytes(List<String> names) {
+        long r = 0;
+        for (String n : names) {
+            r += modules.get(n).bytes;
+        }
+        return r;
+    }
+
+    public void writeJson(File file) throws IOException {
+        PrintWriter out = open(file);
+        try {
+            out.println("{");
+            out.println("  \"modules\": [");
+            int n = 0;
+            for (Module m : modules.values()) {
+                out.print("    {\"name\": " + json(m.name)
+                        + ", \"source\": " + json(m.source)
+                        + ", \"bytes\": " + m.bytes
+                        + ", \"loads\": " + json(m.loads)
+                        + ", \"classes\": " + json(m.classes) + "}");
+                out.println(++n < modules.size() ? "," : "");
+            }
+            out.println("  ],");
+            out.println("  \"cycles\": [");
+            List<List<String>> cycles = cycles();
+            for (int i = 0; i < cycles.size(); i++) {
+                out.print("    " + json(cycles.get(i)));
+                out.println(i < cycles.size() - 1 ? "," : "");
+            }
+            out.println("  ],");
+            List<String> path = criticalPath();
+            out.println("  \"criticalPath\": {\"modules\": " + json(path)
+                    + ", \"bytes\": " + bytes(path) + "}");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the graph for graphviz. Java classes are boxes, the modules of
+     * cycles are red and the critical path is bold.
+     */
+    public void writeDot(File file) throws IOException {
+        List<String> inCycle = new ArrayList<String>();
+        for (List<String> c : cycles()) {
+            inCycle.addAll(c);
+        }
+        List<String> path = criticalPath();
+        PrintWriter out = open(file);
+        try {
+            out.println("digraph yeti {");
+            for (Module m : modules.values()) {
+                StringBuilder attrs = new StringBuilder();
+                if (inCycle.contains(m.name)) {
+                    attrs.append("color=red");
+                }
+                if (path.contains(m.name)) {
+                    attrs.append(attrs.length() > 0 ? "," : "")
+                        .append("style=bold");
+                }
+                out.println("  " + json(m.name)
+                        + (attrs.length() > 0 ? " [" + attrs + "]" : "")
+                        + ";");
+            }
+            Set<String> classes = new TreeSet<String>();
+            for (Module m : modules.values()) {
+                classes.addAll(m.classes);
+            }
+            for (String c : classes) {
+                out.println("  " + json(c) + " [shape=box];");
+            }
+            for (Module m : modules.values()) {
+                for (String l : m.loads) {
+                    out.println("  " + json(m.name) + " -> " + json(l) + ";");
+                }
+                for (String c : m.classes) {
+                    out.println("  " + json(m.name) + " -> " + json(c)
+                            + " [style=dashed];");
+                }
+            }
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static PrintWriter open(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        return new PrintWriter(file, "UTF-8");
+    }
+
+    private static String json(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String json(List<String> l) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String s : l) {
+            sb.append(sb.length() > 1 ? ", " : "").append(json(s));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static Map<String, Module> load(File cacheFile)
+            throws IOException {
+        Map<String, Module> r = new HashMap<String, Module>();
+        if (!cacheFile.isFile()) {
+            return r;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(cacheFile), "UTF-8"));
+        try {
+            Module m = null;
+            for (String l = in.readLine(); l != null; l = in.readLine()) {
+                int tab = l.indexOf('\t');
+                if (tab < 0) {
+                    continue;
+                }
+                String value = l.substring(tab + 1);
+                if (l.startsWith(FILE)) {
+                    m = new Module();
+                    m.source = value.substring(0, value.indexOf('\t'));
+                    r.put(value, m);
+                } else if (m == null) {
+                    continue;
+                } else if (l.startsWith("module\t")) {
+                    m.name = value;
+                } else if (l.startsWith("bytes\t")) {
+                    m.bytes = Long.parseLong(value);
+                } else if (l.startsWith("load\t")) {
+                    m.loads.add(value);
+                } else if (l.startsWith("class\t")) {
+                    m.classes.add(value);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return r;
+    }
+
+    private static void save(Map<String, Module> entries, File cacheFile)
+            throws IOException {
+        PrintWriter out = open(cacheFile);
+        try {
+            for (Map.Entry<String, Module> e : entries.entrySet()) {
+                Module m = e.getValue();
+                out.println(FILE + e.getKey());
+                out.println("module\t" + m.name);
+                out.println("bytes\t" + m.bytes);
+                for (String l : m.loads) {
+                    out.println("load\t" + l);
+                }
+                for (String c : m.classes) {
+                    out.println("class\t" + c);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Records which class files the yeti compiler emitted for which source, so
+ * the classes of deleted or renamed sources can be removed from the output
+ * directory without a clean build.
+ *
+ * Classes which can not be related to a source are kept under the empty
+ * source name.
+ */
+public class OutputManifest {
+
+    private final File file;
+    private final Map<String, List<String>> classes =
+        new TreeMap<String, List<String>>();
+
+    private OutputManifest(File file) {
+        this.file = file;
+    }
+
+    public static OutputManifest load(File file) throws IOException {
+        OutputManifest m = new OutputManifest(file);
+        if (file.isFile()) {
+            Properties props = new Properties();
+            InputStream in = new FileInputStream(file);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+            for (Object key : props.keySet()) {
+                String source = (String) key;
+                List<String> l = new ArrayList<String>();
+                for (String c : StringUtils.split(
+                            props.getProperty(source), " ")) {
+                    l.add(c);
+                }
+                m.classes.put(source, l);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Deletes the classes of all recorded sources which are not in sources
+     * anymore.
+     *
+     * @return the number of deleted class files
+     */
+    public int removeVanished(Collection<String> sources, File outputDir) {
+        Set<String> current = new HashSet<String>(sources);
+        int deleted = 0;
+        for (String source : new ArrayList<String>(classes.keySet())) {
+            if (source.length() > 0 && !current.contains(source)) {
+                deleted += delete(classes.remove(source), outputDir);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Records the classes emitted by a compile of compiledSources and
+     * deletes the classes these sources (or no source) emitted before but
+     * not anymore.
+     *
+     * @param classOwners the main class path (without .class) of each
+     *        compiled source
+     * @param emitted the relative paths of all emitted class files
+     * @return the number of deleted class files
+     */
+    public int update(Map<String, String> classOwners,
+            Collection<String> emitted, File outputDir) {
+        Map<String, List<String>> fresh = new TreeMap<String, List<String>>();
+        for (String source : classOwners.values()) {
+            fresh.put(source, new ArrayList<String>());
+        }
+        List<String> unowned = new ArrayList<String>();
+        for (String c : emitted) {
+            if (!c.endsWith(".class")) {
+                continue;
+            }
+            String base = c.substring(0, c.length() - ".class".length());
+            int dollar = base.indexOf('$');
+            if (dollar > 0) {
+                base = base.substring(0, dollar);
+            }
+            String source = classOwners.get(base);
+            if (source != null) {
+                fresh.get(source).add(c);
+            } else {
+                unowned.add(c);
+            }
+        }
+        fresh.put("", unowned);
+
+        Set<String> emittedSet = new HashSet<String>(emitted);
+        int deleted = 0;
+        for (Map.Entry<String, List<String>> e : fresh.entrySet()) {
+            List<String> old = classes.put(e.getKey(), e.getValue());
+            if (old != null) {
+                List<String> stale = new ArrayList<String>();
+                for (String c : old) {
+                    if (!emittedSet.contains(c)) {
+                        stale.add(c);
+                    }
+                }
+                deleted += delete(stale, outputDir);
+            }
+        }
+        return deleted;
+    }
+
+    public void save() throws IOException {
+        Properties props = new Properties();
+        for (Map.Entry<String, List<String>> e : classes.entrySet()) {
+            props.setProperty(e.getKey(),
+                    StringUtils.join(e.getValue().iterator(), " "));
+        }
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "yeti source to class files");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int delete(List<String> files, File outputDir) {
+        int deleted = 0;
+        for (String c : files) {
+            if (new File(outputDir, c).delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
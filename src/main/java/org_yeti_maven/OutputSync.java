@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies the compiler output from a staging directory to the output
+ * directory. Files whose content did not change are not touched, so their
+ * timestamps stay the same and mtime based tools do not redo any work.
+ */
+public class OutputSync {
+
+    private int written = 0;
+    private int unchanged = 0;
+    private final List<String> files = new ArrayList<String>();
+
+    /**
+     * Syncs all files below from to the same relative path below to.
+     */
+    public void sync(File from, File to) throws IOException {
+        sync(from, to, "");
+    }
+
+    private void sync(File from, File to, String prefix) throws IOException {
+        File[] children = from.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            File target = new File(to, child.getName());
+            if (child.isDirectory()) {
+                sync(child, target, prefix + child.getName() + "/");
+                continue;
+            }
+            files.add(prefix + child.getName());
+            if (sameContent(child, target)) {
+                unchanged++;
+            } else {
+                copy(child, target);
+                written++;
+            }
+        }
+    }
+
+    /** the number of files which were written */
+    public int getWritten() {
+        return written;
+    }
+
+    /** the number of files which were left untouched */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * The relative paths (separated by /) of all synced files.
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+
+    static boolean sameContent(File a, File b) throws IOException {
+        if (!b.isFile() || a.length() != b.length()) {
+            return false;
+        }
+        InputStream ia = new BufferedInputStream(new FileInputStream(a));
+        try {
+            InputStream ib = new BufferedInputStream(new FileInputStream(b));
+            try {
+                int ca;
+                do {
+                    ca = ia.read();
+                    if (ca != ib.read()) {
+                        return false;
+                    }
+                } while (ca != -1);
+                return true;
+            } finally {
+                ib.close();
+            }
+        } finally {
+            ia.close();
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        to.getParentFile().mkdirs();
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    out.write(buf, 0, n);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
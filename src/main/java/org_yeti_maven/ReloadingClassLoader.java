@@ -0,0 +1,168 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A classloader with the dependencies in a stable parent and the project
+ * output directories in a child loader which is replaced when the classes
+ * in the directories change. Classes are looked up in the parent first, so
+ * the output directories must not be on the parent's classpath. Classes
+ * loaded after a reload come from the new child, the dependencies stay
+ * loaded (and JIT-warm).
+ *
+ * Derived directories (classes compiled against the output directories)
+ * are in the child too but not watched, the listener updates them when the
+ * output directories changed before the child is replaced.
+ */
+public class ReloadingClassLoader extends ClassLoader {
+
+    /**
+     * Called by the watcher when the output directories changed, before the
+     * new child loader is created.
+     */
+    public interface Listener {
+        void outputChanged() throws Exception;
+    }
+
+    private final URL[] urls;
+    private final List<File> dirs;
+    private final Listener listener;
+    private volatile URLClassLoader child;
+    private Thread watcher;
+
+    public ReloadingClassLoader(ClassLoader stable, List<File> dirs) {
+        this(stable, dirs, Collections.<File>emptyList(), null);
+    }
+
+    public ReloadingClassLoader(ClassLoader stable, List<File> dirs,
+            List<File> derived, Listener listener) {
+        super(stable);
+        this.dirs = dirs;
+        this.listener = listener;
+        List<File> all = new ArrayList<File>(dirs);
+        all.addAll(derived);
+        this.urls = new URL[all.size()];
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = all.get(i).toURI().toURL();
+            } catch (MalformedURLException ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        }
+        reload();
+    }
+
+    /**
+     * Replaces the child loader of the output directories.
+     */
+    public void reload() {
+        child = new URLClassLoader(urls, getParent());
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve)
+            throws ClassNotFoundException {
+        Class<?> c;
+        try {
+            c = getParent().loadClass(name);
+        } catch (ClassNotFoundException ex) {
+            c = child.loadClass(name);
+        }
+        if (resolve) {
+            resolveClass(c);
+        }
+        return c;
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        return child.findResource(name);
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) throws IOException {
+        return child.findResources(name);
+    }
+
+    /**
+     * Starts a daemon thread which checks the output directories every
+     * interval ms and reloads when their classes changed and did not change
+     * again for one more interval (so a running compile has finished).
+     */
+    public synchronized void startWatching(final long interval,
+            final Log log) {
+        if (watcher != null) {
+            return;
+        }
+        watcher = new Thread("yeti-repl-reload") {
+            public void run() {
+                String loaded = state();
+                String last = loaded;
+                while (!isInterrupted()) {
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    String now = state();
+                    if (now.equals(last) && !now.equals(loaded)) {
+                        if (listener != null) {
+                            try {
+                                listener.outputChanged();
+                            } catch (Exception ex) {
+                                log.warn(ex.getMessage(), ex);
+                            }
+                        }
+                        reload();
+                        loaded = now;
+                        log.info("reloaded the classes of " + dirs
+                                + ", load the changed modules again");
+                    }
+                    last = now;
+                }
+            }
+        };
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    private String state() {
+        Fingerprint f = new Fingerprint();
+        for (File dir : dirs) {
+            f.addFile(dir);
+        }
+        return f.toString();
+    }
+}
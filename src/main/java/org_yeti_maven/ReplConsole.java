@@ -0,0 +1,138 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+/**
+ * Reads the console with jline and a completer over a SymbolIndex and
+ * passes the lines on to the repl through an input stream. jline is not a
+ * dependency of the plugin, it is used by reflection from the given
+ * classloader (jline 0.9.x).
+ */
+public class ReplConsole {
+
+    private static final int MAX_CANDIDATES = 200;
+
+    private final Object reader;
+    private final Method readLine;
+    private final PipedInputStream in = new PipedInputStream();
+    private final PipedOutputStream out;
+
+    /**
+     * @throws ClassNotFoundException if jline can not be loaded from cl
+     */
+    public ReplConsole(ClassLoader cl, final SymbolIndex index)
+            throws Exception {
+        Class<?> readerClass = cl.loadClass("jline.ConsoleReader");
+        Class<?> completorClass = cl.loadClass("jline.Completor");
+        reader = readerClass.getConstructor().newInstance();
+        readLine = readerClass.getMethod("readLine", String.class);
+        Object completor = Proxy.newProxyInstance(cl,
+                new Class<?>[] {completorClass}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method m,
+                            Object[] args) {
+                        if (m.getName().equals("complete")) {
+                            return complete(index, (String) args[0],
+                                    ((Integer) args[1]).intValue(),
+                                    (List<?>) args[2]);
+                        }
+                        if (m.getName().equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (m.getName().equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        return "ReplConsole completor";
+                    }
+                });
+        readerClass.getMethod("addCompletor", completorClass)
+            .invoke(reader, completor);
+        out = new PipedOutputStream(in);
+    }
+
+    /**
+     * Completes the word (identifier with dots) before the cursor.
+     */
+    @SuppressWarnings("unchecked")
+    static int complete(SymbolIndex index, String buffer, int cursor,
+            List<?> candidates) {
+        if (buffer == null) {
+            buffer = "";
+        }
+        int start = cursor;
+        while (start > 0) {
+            char c = buffer.charAt(start - 1);
+            if (!Character.isJavaIdentifierPart(c) && c != '.') {
+                break;
+            }
+            start--;
+        }
+        String prefix = buffer.substring(start, cursor);
+        if (prefix.length() == 0) {
+            return -1;
+        }
+        List<String> r = index.complete(prefix, MAX_CANDIDATES);
+        ((List<String>) candidates).addAll(r);
+        return r.isEmpty() ? -1 : start;
+    }
+
+    /** The stream of the lines read from the console. */
+    public InputStream getInput() {
+        return in;
+    }
+
+    /**
+     * Starts reading the console on a daemon thread.
+     */
+    public void start() {
+        Thread t = new Thread("yeti-repl-console") {
+            public void run() {
+                try {
+                    for (;;) {
+                        String line = (String) readLine.invoke(reader, "");
+                        if (line == null) {
+                            break;
+                        }
+                        out.write((line + "\n").getBytes());
+                        out.flush();
+                    }
+                } catch (Exception ex) {
+                    //the repl is gone or the console closed
+                } finally {
+                    close(out);
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void close(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException ex) {
+        }
+    }
+}
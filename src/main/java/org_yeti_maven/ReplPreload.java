@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The startup commands of the repl split into a preload, the leading load,
+ * import and definition lines which are compiled once into a preload
+ * module, and the remaining lines the repl still runs. Loading the preload
+ * module brings the definitions into the scope of the repl as fields of
+ * its struct. The preload ends at the first other command, so the commands
+ * are still evaluated in the order they were given.
+ */
+public class ReplPreload {
+
+    private static final Set<String> KEYWORDS = new HashSet<String>(
+            Arrays.asList("load", "import", "var", "norec", "if", "case",
+                "try", "do", "class", "typedef", "module", "program",
+                "not", "throw", "new"));
+
+    /** the leading load, import and definition lines in their order */
+    private final List<String> preload = new ArrayList<String>();
+    /** the load and import lines of the preload, needed by the repl too */
+    private final List<String> header = new ArrayList<String>();
+    private final List<String> names = new ArrayList<String>();
+    /** everything from the first other command on, run by the repl */
+    private final List<String> rest = new ArrayList<String>();
+
+    /**
+     * @param commands the ;; separated commands
+     */
+    public ReplPreload(String commands) {
+        for (String line : commands.split(";;")) {
+            //the repl reads a command per line
+            line = line.replaceAll("\\s*[\r\n]+\\s*", " ").trim();
+            while (line.endsWith(";")) {
+                line = line.substring(0, line.length() - 1).trim();
+            }
+            if (line.length() == 0) {
+                continue;
+            }
+            if (!rest.isEmpty()) {
+                rest.add(line);
+                continue;
+            }
+            String first = new YetiSources.Lexer(line).next();
+            String name = definedName(line);
+            if ("load".equals(first) || "import".equals(first)) {
+                preload.add(line);
+                header.add(line);
+            } else if (name != null && !names.contains(name)) {
+                preload.add(line);
+                names.add(name);
+            } else {
+                rest.add(line);
+            }
+        }
+    }
+
+    /**
+     * The name bound by a definition (name args = expr) or null.
+     */
+    static String definedName(String line) {
+        YetiSources.Lexer lex = new YetiSources.Lexer(line);
+        String name = lex.next();
+        if (name == null || !Character.isJavaIdentifierStart(name.charAt(0))
+                || name.indexOf('.') >= 0 || KEYWORDS.contains(name)) {
+            return null;
+        }
+        for (String t = lex.next(); t != null; t = lex.next()) {
+            if (t.equals("=")) {
+                String next = lex.next();
+                return "=".equals(next) ? null : name;
+            }
+            //arguments and unit arguments only
+            if (!t.equals("(") && !t.equals(")")
+                    && !Character.isJavaIdentifierStart(t.charAt(0))) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public boolean hasDefinitions() {
+        return !names.isEmpty();
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * The source of the preload module, its value is a struct of the
+     * definitions.
+     */
+    public String moduleSource(String moduleName) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("module ").append(moduleName).append(";\n\n");
+        for (String l : preload) {
+            sb.append(l).append(";\n");
+        }
+        sb.append("\n{\n");
+        for (int i = 0; i < names.size(); i++) {
+            sb.append("    ").append(names.get(i)).append(" = ")
+                .append(names.get(i))
+                .append(i < names.size() - 1 ? ",\n" : "\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * The lines the repl reads before the user input. With a compiled
+     * preload module (moduleName not null) the definitions come from
+     * loading it, otherwise all commands are evaluated from source.
+     */
+    public String replInput(String moduleName) {
+        StringBuilder sb = new StringBuilder();
+        for (String l : moduleName != null ? header : preload) {
+            sb.append(l).append(";\n");
+        }
+        if (moduleName != null) {
+            sb.append("load ").append(moduleName).append(";\n");
+        }
+        for (String l : rest) {
+            sb.append(l).append(";\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the sources of a compile into batches which can be compiled one
+ * after the other, each one against the output of the batches before.
+ * A module is never in an earlier batch than the modules it loads and
+ * modules loading each other in a cycle stay in one batch. The java
+ * sources stay together in one batch, which comes after the yeti modules
+ * they refer to and before the ones which refer to them (through import,
+ * ~ or new). Yeti modules and java sources referring to each other end up
+ * in the same batch.
+ */
+public class SourceBatches {
+
+    private final List<String> sources;
+    private final List<List<Integer>> deps = new ArrayList<List<Integer>>();
+
+    private SourceBatches(List<String> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * @param batchSize the maximum number of sources in a batch (exceeded
+     *        only by cyclic modules or the java sources)
+     */
+    public static List<List<String>> split(List<String> sourceFiles,
+            List<File> sourceDirs, int batchSize) throws IOException {
+        return new SourceBatches(sourceFiles).split(sourceDirs, batchSize);
+    }
+
+    private List<List<String>> split(List<File> sourceDirs, int batchSize)
+            throws IOException {
+        //module or class name -> source
+        Map<String, Integer> modules = new HashMap<String, Integer>();
+        List<String> yetiModules = new ArrayList<String>();
+        List<String> texts = new ArrayList<String>();
+        List<Integer> java = new ArrayList<Integer>();
+        for (int i = 0; i < sources.size(); i++) {
+            File f = new File(sources.get(i));
+            String name = YetiSources.classPath(f, sourceDirs)
+                .replace('/', '.');
+            texts.add(YetiSources.read(f));
+            modules.put(name, i);
+            if (f.getName().endsWith(".yeti")) {
+                yetiModules.add(name);
+            } else {
+                java.add(i);
+            }
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            List<String> refs;
+            if (java.contains(i)) {
+                refs = YetiSources.referencedClasses(texts.get(i),
+                        yetiModules);
+            } else {
+                refs = YetiSources.loads(texts.get(i));
+                refs.addAll(YetiSources.javaReferences(texts.get(i)));
+            }
+            List<Integer> d = new ArrayList<Integer>();
+            for (String ref : refs) {
+                Integer dep = modules.get(ref);
+                if (dep != null && dep.intValue() != i) {
+                    d.add(dep);
+                }
+            }
+            deps.add(d);
+        }
+        //the java sources are compiled together (their references to each
+        //other are not known), a cycle puts them into one component
+        for (int j = 0; j < java.size(); j++) {
+            deps.get(java.get(j)).add(java.get((j + 1) % java.size()));
+        }
+
+        //strongly connected components in dependency order
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (int i = 0; i < sources.size(); i++) {
+            nodes.add(i);
+        }
+        List<List<Integer>> components = StronglyConnected.components(nodes,
+                new StronglyConnected.Graph<Integer>() {
+                    public List<Integer> dependencies(Integer i) {
+                        return deps.get(i);
+                    }
+                });
+
+        List<List<String>> batches = new ArrayList<List<String>>();
+        List<String> current = new ArrayList<String>();
+        for (List<Integer> component : components) {
+            if (!current.isEmpty()
+                    && current.size() + component.size() > batchSize) {
+                batches.add(current);
+                current = new ArrayList<String>();
+            }
+            for (Integer i : component) {
+                current.add(sources.get(i));
+            }
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+}
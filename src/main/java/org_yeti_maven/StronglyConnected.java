@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The strongly connected components of a dependency graph (Tarjan), used
+ * to find the modules loading each other in a cycle. The components are
+ * returned in dependency order: a component comes after the ones its nodes
+ * depend on.
+ */
+public class StronglyConnected<T> {
+
+    /** The edges of the graph. */
+    public interface Graph<T> {
+        /** The nodes the node depends on. */
+        Collection<T> dependencies(T node);
+    }
+
+    private final Graph<T> graph;
+    private final Map<T, Integer> index = new HashMap<T, Integer>();
+    private final Map<T, Integer> lowlink = new HashMap<T, Integer>();
+    private final List<T> stack = new ArrayList<T>();
+    private final Set<T> onStack = new HashSet<T>();
+    private final List<List<T>> components = new ArrayList<List<T>>();
+
+    private StronglyConnected(Graph<T> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * The components of the nodes, in dependency order. Nodes which are
+     * only reached as dependencies are included.
+     */
+    public static <T> List<List<T>> components(Collection<T> nodes,
+            Graph<T> graph) {
+        StronglyConnected<T> s = new StronglyConnected<T>(graph);
+        for (T node : nodes) {
+            if (!s.index.containsKey(node)) {
+                s.strongConnect(node);
+            }
+        }
+        return s.components;
+    }
+
+    private void strongConnect(T v) {
+        int i = index.size() + 1;
+        index.put(v, i);
+        lowlink.put(v, i);
+        stack.add(v);
+        onStack.add(v);
+        for (T w : graph.dependencies(v)) {
+            if (!index.containsKey(w)) {
+                strongConnect(w);
+                lowlink.put(v, Math.min(lowlink.get(v), lowlink.get(w)));
+            } else if (onStack.contains(w)) {
+                lowlink.put(v, Math.min(lowlink.get(v), index.get(w)));
+            }
+        }
+        if (lowlink.get(v).equals(index.get(v))) {
+            List<T> component = new ArrayList<T>();
+            T w;
+            do {
+                w = stack.remove(stack.size() - 1);
+                onStack.remove(w);
+                component.add(w);
+            } while (!w.equals(v));
+            components.add(component);
+        }
+    }
+}
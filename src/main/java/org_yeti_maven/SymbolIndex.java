@@ -0,0 +1,232 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The symbols of a classpath for completion: the java classes (by
+ * qualified name) and the yeti modules and their fields (from the .yeti
+ * sources on the classpath). The symbols of each classpath entry are
+ * persisted in an index file and only read again from entries whose
+ * fingerprint (path, size, modification time) changed. Lookups are binary
+ * searches in a sorted array.
+ */
+public class SymbolIndex {
+
+    private static final String ENTRY = "#entry\t";
+
+    private final String[] symbols;
+    private int reindexed;
+
+    private SymbolIndex(String[] symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Builds the index of the classpath, using and updating the index
+     * file.
+     */
+    public static SymbolIndex build(Collection<String> classpath,
+            File indexFile) throws IOException {
+        Map<String, List<String>> old = load(indexFile);
+        Map<String, List<String>> current =
+            new HashMap<String, List<String>>();
+        int reindexed = 0;
+        for (String e : new TreeSet<String>(classpath)) {
+            File f = new File(e);
+            String key = f.getAbsolutePath() + "\t"
+                + new Fingerprint().addFile(f);
+            List<String> s = old.get(key);
+            if (s == null) {
+                s = scan(f);
+                reindexed++;
+            }
+            current.put(key, s);
+        }
+        if (reindexed > 0 || current.size() != old.size()) {
+            save(current, indexFile);
+        }
+        TreeSet<String> all = new TreeSet<String>();
+        for (List<String> s : current.values()) {
+            all.addAll(s);
+        }
+        SymbolIndex index = new SymbolIndex(all.toArray(new String[all.size()]));
+        index.reindexed = reindexed;
+        return index;
+    }
+
+    /** The number of classpath entries which were (re)scanned. */
+    public int getReindexed() {
+        return reindexed;
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * The symbols starting with prefix, at most limit of them.
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> r = new ArrayList<String>();
+        int i = Arrays.binarySearch(symbols, prefix);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i < symbols.length && r.size() < limit
+                && symbols[i].startsWith(prefix); i++) {
+            r.add(symbols[i]);
+        }
+        return r;
+    }
+
+    private static List<String> scan(File f) throws IOException {
+        List<String> r = new ArrayList<String>();
+        if (f.isDirectory()) {
+            scanDir(f, "", r);
+        } else if (f.isFile()) {
+            ZipFile zip;
+            try {
+                zip = new ZipFile(f);
+            } catch (IOException ex) {
+                //not a jar
+                return r;
+            }
+            try {
+                for (Enumeration<? extends ZipEntry> en = zip.entries();
+                        en.hasMoreElements();) {
+                    ZipEntry ze = en.nextElement();
+                    if (ze.getName().endsWith(".yeti")) {
+                        InputStream in = zip.getInputStream(ze);
+                        try {
+                            addModule(read(in), r);
+                        } finally {
+                            in.close();
+                        }
+                    } else {
+                        addClass(ze.getName(), r);
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+        return r;
+    }
+
+    private static void scanDir(File dir, String path, List<String> r)
+            throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String name = path + f.getName();
+            if (f.isDirectory()) {
+                scanDir(f, name + "/", r);
+            } else if (name.endsWith(".yeti")) {
+                addModule(YetiSources.read(f), r);
+            } else {
+                addClass(name, r);
+            }
+        }
+    }
+
+    private static void addClass(String name, List<String> r) {
+        //top level public classes only
+        if (name.endsWith(".class") && name.indexOf('$') < 0
+                && !name.startsWith("META-INF")) {
+            r.add(name.substring(0, name.length() - 6).replace('/', '.'));
+        }
+    }
+
+    private static void addModule(String source, List<String> r) {
+        String module = YetiSources.moduleName(source);
+        if (module != null) {
+            r.add(module);
+            r.addAll(YetiSources.moduleFields(source));
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[4096];
+        int n;
+        while ((n = reader.read(buf)) != -1) {
+            sb.append(buf, 0, n);
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, List<String>> load(File indexFile)
+            throws IOException {
+        Map<String, List<String>> r = new HashMap<String, List<String>>();
+        if (!indexFile.isFile()) {
+            return r;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(indexFile), "UTF-8"));
+        try {
+            List<String> current = null;
+            for (String l = in.readLine(); l != null; l = in.readLine()) {
+                if (l.startsWith(ENTRY)) {
+                    current = new ArrayList<String>();
+                    r.put(l.substring(ENTRY.length()), current);
+                } else if (current != null && l.length() > 0) {
+                    current.add(l);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return r;
+    }
+
+    private static void save(Map<String, List<String>> entries,
+            File indexFile) throws IOException {
+        indexFile.getParentFile().mkdirs();
+        PrintWriter out = new PrintWriter(indexFile, "UTF-8");
+        try {
+            for (Map.Entry<String, List<String>> e : entries.entrySet()) {
+                out.println(ENTRY + e.getKey());
+                for (String s : e.getValue()) {
+                    out.println(s);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
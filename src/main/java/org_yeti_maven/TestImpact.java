@@ -0,0 +1,208 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Which test modules are affected by a change. The classes a test module
+ * touches are the classes of the project output directories it reaches
+ * through the references in their class files. A test module is affected
+ * if the content of one of these classes, the dependencies or any other
+ * file (resource) of the output directories changed since it last passed.
+ * The hashes of the last passing runs are kept in a properties file.
+ */
+public class TestImpact {
+
+    private final List<File> dirs;
+    private final String dependencies;
+    private final File stateFile;
+    private final Properties passed = new Properties();
+    /** internal class name -> its class file (null if not in dirs) */
+    private final Map<String, File> files = new HashMap<String, File>();
+    private final Map<String, ClassFileInfo> infos =
+        new HashMap<String, ClassFileInfo>();
+    private final Map<String, String> hashes = new HashMap<String, String>();
+    private String resources;
+
+    /**
+     * @param dirs the output directories of the project (test first)
+     * @param dependencies the classpath of the dependencies
+     * @param stateFile the hashes of the last passing runs
+     */
+    public TestImpact(List<File> dirs, Collection<String> dependencies,
+            File stateFile) throws IOException {
+        this.dirs = dirs;
+        this.dependencies =
+            new Fingerprint().addClasspath(dependencies).toString();
+        this.stateFile = stateFile;
+        if (stateFile.isFile()) {
+            InputStream in = new FileInputStream(stateFile);
+            try {
+                passed.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * The project classes (internal names) the module reaches.
+     */
+    public Set<String> closure(String module) throws IOException {
+        Set<String> seen = new TreeSet<String>();
+        LinkedList<String> todo = new LinkedList<String>();
+        todo.add(module.replace('.', '/'));
+        while (!todo.isEmpty()) {
+            String c = todo.removeFirst();
+            if (seen.contains(c) || classFile(c) == null) {
+                continue;
+            }
+            seen.add(c);
+            todo.addAll(info(c).getReferences());
+        }
+        return seen;
+    }
+
+    /**
+     * The hash of the content of the classes the module reaches, the
+     * resources and the dependencies.
+     */
+    public String hash(String module) throws IOException {
+        Fingerprint f = new Fingerprint().add(dependencies).add(resources());
+        for (String c : closure(module)) {
+            f.add(c).add(contentHash(c));
+        }
+        return f.toString();
+    }
+
+    /**
+     * The modules which changed since they last passed.
+     */
+    public List<String> affected(List<String> modules) throws IOException {
+        List<String> r = new ArrayList<String>();
+        for (String m : modules) {
+            if (!hash(m).equals(passed.getProperty(m))) {
+                r.add(m);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Records the result of a run of the module, only passing runs are
+     * kept.
+     */
+    public void record(String module, boolean pass) throws IOException {
+        if (pass) {
+            passed.setProperty(module, hash(module));
+        } else {
+            passed.remove(module);
+        }
+    }
+
+    public void save() throws IOException {
+        stateFile.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(stateFile);
+        try {
+            passed.store(out, "yeti test modules at their last passing run");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * The hash of the files in the output directories which are no class
+     * files. Which test reads which resource is not known, so a changed
+     * resource affects all test modules.
+     */
+    private String resources() throws IOException {
+        if (resources == null) {
+            Fingerprint f = new Fingerprint();
+            for (File d : dirs) {
+                addResources(d, "", f);
+            }
+            resources = f.toString();
+        }
+        return resources;
+    }
+
+    private static void addResources(File dir, String path, Fingerprint f)
+            throws IOException {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String n : names) {
+            File file = new File(dir, n);
+            if (file.isDirectory()) {
+                addResources(file, path + n + "/", f);
+            } else if (!n.endsWith(".class")) {
+                f.add(path + n).addContent(file);
+            }
+        }
+    }
+
+    private File classFile(String name) {
+        if (files.containsKey(name)) {
+            return files.get(name);
+        }
+        File r = null;
+        for (File d : dirs) {
+            File f = new File(d, name + ".class");
+            if (f.isFile()) {
+                r = f;
+                break;
+            }
+        }
+        files.put(name, r);
+        return r;
+    }
+
+    private ClassFileInfo info(String name) throws IOException {
+        ClassFileInfo info = infos.get(name);
+        if (info == null) {
+            info = ClassFileInfo.read(classFile(name));
+            infos.put(name, info);
+        }
+        return info;
+    }
+
+    private String contentHash(String name) throws IOException {
+        String h = hashes.get(name);
+        if (h == null) {
+            h = new Fingerprint().addContent(classFile(name)).toString();
+            hashes.put(name, h);
+        }
+        return h;
+    }
+}
@@ -23,7 +23,11 @@ import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.maven.project.MavenProject;
 
@@ -68,23 +72,61 @@ public class TychoUtilities {
         getLocationsMethod = getLocationsMethod0;
     }
 
-    @SuppressWarnings("unchecked")
+    /** project -> the OSGi classpath computed for its context value */
+    private static final Map<MavenProject, CachedClasspath> cache =
+        new WeakHashMap<MavenProject, CachedClasspath>();
+
+    /**
+     * The OSGi classpath of the project followed by the default elements,
+     * without duplicates. The OSGi part is computed once per project and
+     * Tycho classpath (as long as Tycho does not set a new one).
+     */
     public static List<String> addOsgiClasspathElements(MavenProject project, List<String> defaultClasspathElements) {
         if (getLocationsMethod == null) {
             return defaultClasspathElements;
         }
 
-        List<Object> classpath = (List<Object>) getContextValue(project, TychoConstants_CTX_ECLIPSE_PLUGIN_CLASSPATH);
-        if (classpath == null || classpath.isEmpty())
+        List<String> osgiClasspath = getOsgiClasspath(project);
+        if (osgiClasspath.isEmpty())
             return defaultClasspathElements;
 
-        List<String> osgiClasspath = new ArrayList<String>();
-        for (Object classpathEntry : classpath) {
-            for (File file : getLocations(classpathEntry))
-                osgiClasspath.add(file.getAbsolutePath());
+        Set<String> r = new LinkedHashSet<String>(osgiClasspath);
+        r.addAll(defaultClasspathElements);
+        return Collections.unmodifiableList(new ArrayList<String>(r));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> getOsgiClasspath(MavenProject project) {
+        Object contextValue = getContextValue(project, TychoConstants_CTX_ECLIPSE_PLUGIN_CLASSPATH);
+        synchronized (cache) {
+            CachedClasspath cached = cache.get(project);
+            if (cached != null && cached.contextValue == contextValue)
+                return cached.classpath;
+        }
+
+        List<Object> classpath = (List<Object>) contextValue;
+        Set<String> osgiClasspath = new LinkedHashSet<String>();
+        if (classpath != null) {
+            for (Object classpathEntry : classpath) {
+                for (File file : getLocations(classpathEntry))
+                    osgiClasspath.add(CanonicalPaths.get(file).getPath());
+            }
+        }
+        List<String> r = Collections.unmodifiableList(new ArrayList<String>(osgiClasspath));
+        synchronized (cache) {
+            cache.put(project, new CachedClasspath(contextValue, r));
+        }
+        return r;
+    }
+
+    private static class CachedClasspath {
+        final Object contextValue;
+        final List<String> classpath;
+
+        CachedClasspath(Object contextValue, List<String> classpath) {
+            this.contextValue = contextValue;
+            this.classpath = classpath;
         }
-        osgiClasspath.addAll(defaultClasspathElements);
-        return osgiClasspath;
     }
 
     private static Object getContextValue(MavenProject project, String key) {
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.FileUtils;
+import org_yeti_maven_executions.JavaMainCaller;
+import org_yeti_maven_executions.JavaMainCallerByFork;
+import org_yeti_maven_executions.MainHelper;
+
+/**
+ * Runs JMH benchmarks written in yeti. Each module in src/bench/yeti whose
+ * value is a struct can define benchmarks as fields starting with "bench",
+ * ie
+ *
+ * <pre>
+ * module bench.strings;
+ * {
+ *     benchConcat () = strJoin "," (map string [1..100])
+ * }
+ * </pre>
+ *
+ * The modules are compiled like the test sources, a JMH harness class
+ * is generated and compiled for each of them and JMH runs forked. The
+ * results are written as JSON and CSV to target/yeti-bench and compared
+ * with the baseline.
+ *
+ * @goal bench
+ * @requiresDependencyResolution test
+ */
+public class YetiBenchMojo extends YetiCompileMojoBase {
+
+    static final String GENERATED_PACKAGE = "yeti_bench";
+
+    /**
+     * The directory of the yeti benchmark sources.
+     *
+     * @parameter expression="${basedir}/src/bench/yeti"
+     */
+    protected File benchSourceDir;
+
+    /**
+     * Output directory of the compiled benchmarks and harness classes.
+     *
+     * @parameter expression="${project.build.directory}/bench-classes"
+     */
+    protected File benchOutputDir;
+
+    /**
+     * Directory for the results (bench.json, bench.csv) and the generated
+     * harness sources.
+     *
+     * @parameter expression="${project.build.directory}/yeti-bench"
+     */
+    protected File benchDir;
+
+    /**
+     * The JMH version.
+     *
+     * @parameter expression="${yeti.bench.jmhVersion}" default-value="1.37"
+     */
+    protected String jmhVersion = "1.37";
+
+    /**
+     * Regular expression of the benchmarks to run (ie "strings.*concat").
+     *
+     * @parameter expression="${yeti.bench.include}"
+     */
+    protected String include;
+
+    /**
+     * Number of JVMs JMH forks for each benchmark.
+     *
+     * @parameter expression="${yeti.bench.forks}" default-value="1"
+     */
+    protected int forks = 1;
+
+    /**
+     * Number of warmup iterations.
+     *
+     * @parameter expression="${yeti.bench.warmupIterations}" default-value="3"
+     */
+    protected int warmupIterations = 3;
+
+    /**
+     * Number of measurement iterations.
+     *
+     * @parameter expression="${yeti.bench.iterations}" default-value="5"
+     */
+    protected int iterations = 5;
+
+    /**
+     * Further JMH command line arguments (ie "-tu", "ns").
+     *
+     * @parameter
+     */
+    protected String[] jmhArgs;
+
+    /**
+     * Properties file with the baseline scores (benchmark:mode = score).
+     *
+     * @parameter expression="${yeti.bench.baseline}"
+     *            default-value="${basedir}/src/bench/baseline.properties"
+     */
+    protected File baselineFile;
+
+    /**
+     * Percent a score may get worse than its baseline before it is
+     * reported as regression.
+     *
+     * @parameter expression="${yeti.bench.threshold}" default-value="10"
+     */
+    protected double regressionThreshold = 10;
+
+    /**
+     * Wheter a regression fails the build.
+     *
+     * @parameter expression="${yeti.bench.failOnRegression}" default-value="true"
+     */
+    protected boolean failOnRegression = true;
+
+    /**
+     * Writes the scores of this run to the baseline file instead of
+     * comparing them.
+     *
+     * @parameter expression="${yeti.bench.updateBaseline}" default-value="false"
+     */
+    protected boolean updateBaseline = false;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected List<String> getClasspathElements() throws Exception {
+        return project.getTestClasspathElements();
+    }
+
+    @Override
+    protected File getOutputDir() throws Exception {
+        return benchOutputDir.getAbsoluteFile();
+    }
+
+    @Override
+    protected List<File> getSourceDirectories() throws Exception {
+        List<File> r = new ArrayList<File>();
+        if (benchSourceDir.exists()) {
+            r.add(normalize(benchSourceDir));
+        }
+        return r;
+    }
+
+    @Override
+    protected void doExecute() throws Exception {
+        List<File> sourceDirs = getSourceDirectories();
+        if (sourceDirs.isEmpty()) {
+            getLog().info("no benchmarks in " + benchSourceDir);
+            return;
+        }
+        super.doExecute();
+
+        //the benchmark modules
+        File generatedDir = new File(benchDir, "generated");
+        FileUtils.deleteDirectory(generatedDir);
+        List<String> harness = new ArrayList<String>();
+        for (String source : findSourceFiles(sourceDirs)) {
+            if (!source.endsWith(".yeti")) {
+                continue;
+            }
+            String text = YetiSources.read(new File(source));
+            String module = YetiSources.moduleName(text);
+            List<String> benchmarks = new ArrayList<String>();
+            for (String field : YetiSources.moduleFields(text)) {
+                if (field.startsWith("bench")) {
+                    benchmarks.add(field);
+                }
+            }
+            if (module == null || benchmarks.isEmpty()) {
+                continue;
+            }
+            File java = new File(generatedDir, GENERATED_PACKAGE
+                    + File.separator + harnessName(module) + ".java");
+            java.getParentFile().mkdirs();
+            FileUtils.fileWrite(java.getPath(), "UTF-8",
+                    harnessSource(module, benchmarks));
+            harness.add(java.getPath());
+            getLog().info(module + ": " + benchmarks);
+        }
+        if (harness.isEmpty()) {
+            getLog().info("no bench* functions found in " + sourceDirs);
+            return;
+        }
+
+        Set<String> classpath =
+            new LinkedHashSet<String>(getClasspathElements());
+        classpath.add(getOutputDir().getPath());
+        addYetiCompilerToClasspath(classpath);
+        addToClasspath("org.openjdk.jmh", "jmh-core", jmhVersion,
+                classpath, true);
+        Set<String> processorPath = new LinkedHashSet<String>(classpath);
+        addToClasspath("org.openjdk.jmh", "jmh-generator-annprocess",
+                jmhVersion, processorPath, true);
+        javac(processorPath, harness);
+
+        //run jmh
+        benchDir.mkdirs();
+        File json = new File(benchDir, "bench.json");
+        json.delete();
+        List<String> args = new ArrayList<String>();
+        if (include != null && include.length() > 0) {
+            args.add(include);
+        } else {
+            args.add(GENERATED_PACKAGE + "\\..*");
+        }
+        args.addAll(Arrays.asList("-f", "" + forks, "-wi",
+                    "" + warmupIterations, "-i", "" + iterations,
+                    "-rf", "json", "-rff", json.getAbsolutePath()));
+        if (jmhArgs != null) {
+            args.addAll(Arrays.asList(jmhArgs));
+        }
+        JavaMainCaller caller = new JavaMainCallerByFork(this,
+                "org.openjdk.jmh.Main",
+                MainHelper.toMultiPath(new ArrayList<String>(classpath)),
+                jvmArgs, args.toArray(new String[args.size()]),
+                forceUseArgFile);
+        caller.redirectToLog();
+        if (!caller.run(displayCmd, false) || !json.isFile()) {
+            throw new MojoExecutionException("JMH failed");
+        }
+
+        report(BenchResults.read(json));
+    }
+
+    private void report(BenchResults results) throws Exception {
+        if (updateBaseline) {
+            results.writeBaseline(baselineFile);
+            getLog().info("baseline written to " + baselineFile);
+        } else {
+            results.compare(baselineFile);
+        }
+        results.writeCsv(new File(benchDir, "bench.csv"));
+        for (BenchResults.Result r : results.getResults()) {
+            getLog().info(r.toString());
+        }
+        if (updateBaseline) {
+            return;
+        }
+        List<BenchResults.Result> regressions =
+            results.regressions(regressionThreshold);
+        for (BenchResults.Result r : regressions) {
+            getLog().error("regression: " + r);
+        }
+        if (!regressions.isEmpty() && failOnRegression) {
+            throw new MojoFailureException(regressions.size()
+                    + " benchmarks are more than " + regressionThreshold
+                    + "% worse than the baseline " + baselineFile);
+        }
+    }
+
+    /**
+     * Compiles the harness sources with javac and the JMH annotation
+     * processor, which generates the actual benchmark classes.
+     */
+    private void javac(Set<String> classpath, List<String> sources)
+            throws Exception {
+        File argFile = new File(benchDir, "javac.args");
+        PrintWriter out = new PrintWriter(argFile, "UTF-8");
+        try {
+            out.println("-nowarn");
+            out.println("-processor");
+            out.println("org.openjdk.jmh.generators.BenchmarkProcessor");
+            out.println("-d");
+            out.println(quote(getOutputDir().getPath()));
+            out.println("-cp");
+            out.println(quote(MainHelper.toMultiPath(
+                            new ArrayList<String>(classpath))));
+            for (String s : sources) {
+                out.println(quote(s));
+            }
+        } finally {
+            out.close();
+        }
+
+        ProcessBuilder pb = new ProcessBuilder(findJavac(),
+                "@" + argFile.getAbsolutePath());
+        pb.redirectErrorStream(true);
+        if (displayCmd) {
+            getLog().info("cmd: " + pb.command());
+        }
+        Process p = pb.start();
+        p.getOutputStream().close();
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(p.getInputStream()));
+        try {
+            for (String l = in.readLine(); l != null; l = in.readLine()) {
+                getLog().info(l);
+            }
+        } finally {
+            in.close();
+        }
+        if (p.waitFor() != 0) {
+            throw new MojoExecutionException(
+                    "javac failed on the benchmark harness");
+        }
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\") + "\"";
+    }
+
+    private static String findJavac() {
+        String exe = File.separatorChar == '\\' ? "javac.exe" : "javac";
+        File home = new File(System.getProperty("java.home"));
+        File f = new File(home, "bin" + File.separator + exe);
+        if (!f.isFile()) {
+            //a JDK 8 java.home is the jre directory
+            f = new File(home.getParentFile(), "bin" + File.separator + exe);
+        }
+        return f.isFile() ? f.getPath() : exe;
+    }
+
+    static String harnessName(String module) {
+        return module.replace('.', '_');
+    }
+
+    /**
+     * A JMH state class which evaluates the module once and has a
+     * benchmark method for each bench function calling it with ().
+     */
+    static String harnessSource(String module, List<String> benchmarks) {
+        String name = harnessName(module);
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(GENERATED_PACKAGE).append(";\n\n");
+        sb.append("import java.util.concurrent.TimeUnit;\n");
+        sb.append("import org.openjdk.jmh.annotations.*;\n\n");
+        sb.append("/** Generated by yeti:bench for module ")
+            .append(module).append(". */\n");
+        sb.append("@State(Scope.Benchmark)\n");
+        sb.append("@BenchmarkMode(Mode.AverageTime)\n");
+        sb.append("@OutputTimeUnit(TimeUnit.MICROSECONDS)\n");
+        sb.append("public class ").append(name).append(" {\n");
+        for (String b : benchmarks) {
+            sb.append("    private yeti.lang.Fun ").append(b).append(";\n");
+        }
+        sb.append("\n    @Setup\n");
+        sb.append("    public void setup() throws Exception {\n");
+        sb.append("        yeti.lang.Struct module = (yeti.lang.Struct)\n");
+        sb.append("            Class.forName(\"").append(module)
+            .append("\").getMethod(\"eval\").invoke(null);\n");
+        for (String b : benchmarks) {
+            sb.append("        ").append(b)
+                .append(" = (yeti.lang.Fun) module.get(\"")
+                .append(b).append("\");\n");
+        }
+        sb.append("    }\n");
+        for (String b : benchmarks) {
+            sb.append("\n    @Benchmark\n");
+            sb.append("    public Object ").append(b).append("() {\n");
+            sb.append("        return ").append(b).append(".apply(null);\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
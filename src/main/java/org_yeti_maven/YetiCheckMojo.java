@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Typechecks the yeti sources without producing class files. The compiler
+ * output goes to a scratch directory which is deleted afterwards. On linux
+ * the scratch directory is created in the memory backed /dev/shm so no
+ * class file reaches the disk.
+ *
+ * @goal check
+ * @requiresDependencyResolution test
+ * @threadSafe
+ */
+public class YetiCheckMojo extends YetiCompileMojoBase {
+
+    /**
+     * The directory in which to find test yeti source code
+     *
+     * @parameter expression="${project.build.testSourceDirectory}/../yeti"
+     */
+    protected File testSourceDir;
+
+    /**
+     * Wheter to check the test sources together with the main sources.
+     *
+     * @parameter expression="${yeti.check.includeTests}" default-value="true"
+     */
+    protected boolean includeTests = true;
+
+    /**
+     * Directory in which the scratch output directory is created. Defaults
+     * to /dev/shm if it exists or else to java.io.tmpdir.
+     *
+     * @parameter expression="${yeti.check.scratchDir}"
+     */
+    protected File scratchDir;
+
+    private File checkOutputDir;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected List<String> getClasspathElements() throws Exception {
+        if (includeTests) {
+            return project.getTestClasspathElements();
+        }
+        return super.getClasspathElements();
+    }
+
+    @Override
+    protected List<File> getSourceDirectories() throws Exception {
+        List<File> r = super.getSourceDirectories();
+        if (includeTests) {
+            File sd = testSourceDir;
+            if (!sd.exists())
+                sd = new File("src/test/yeti");
+            if (sd.exists() && !r.contains(normalize(sd)))
+                r.add(normalize(sd));
+        }
+        return r;
+    }
+
+    /**
+     * The scratch output is thrown away, so it needs no staging.
+     */
+    @Override
+    protected boolean isWriteIfChanged() {
+        return false;
+    }
+
+    @Override
+    protected boolean isPruneOrphans() {
+        return false;
+    }
+
+    @Override
+    protected File getOutputDir() throws Exception {
+        return checkOutputDir;
+    }
+
+    @Override
+    protected void doExecute() throws Exception {
+        checkOutputDir = createScratchDir();
+        getLog().debug("check output goes to " + checkOutputDir);
+        try {
+            super.doExecute();
+        } catch (CompileFailedException ex) {
+            getLog().error(ex.getMessage());
+            throw new MojoFailureException(
+                    "yeti sources do not typecheck: " + ex.getMessage());
+        } finally {
+            FileUtils.deleteDirectory(checkOutputDir);
+        }
+    }
+
+    private File createScratchDir() throws Exception {
+        File parent = scratchDir;
+        if (parent == null) {
+            File shm = new File("/dev/shm");
+            parent = shm.isDirectory() && shm.canWrite() ? shm : null;
+        }
+        File dir = File.createTempFile("yeti-check-", "", parent);
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+}
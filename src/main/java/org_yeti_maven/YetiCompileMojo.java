@@ -22,6 +22,7 @@
  * @phase compile
  * @goal compile
  * @requiresDependencyResolution compile
+ * @threadSafe
  */
 public class YetiCompileMojo extends YetiCompileMojoBase {
 }
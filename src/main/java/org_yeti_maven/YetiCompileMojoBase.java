@@ -16,7 +16,6 @@
  package org_yeti_maven;
 
 import java.io.File;
-import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -28,12 +27,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
 import org_yeti_maven_executions.MainHelper;
 
 /**
@@ -66,14 +69,52 @@ public class YetiCompileMojoBase extends YetiMojoSupport {
      */
     protected boolean logWarnings = true;
 
+    /**
+     * Who compiles the java sources in the yeti source directories. With
+     * "yeti" (the default) all of them are given to the yeti compiler. With
+     * "javac" the yeti compiler uses the class files which javac (the 
+     * maven-compiler-plugin) already put in the output directory and only
+     * gets the java sources javac did not compile. So each java file is 
+     * compiled once even if the yeti source directory is also a java 
+     * source root (ie through yeti:add-source).
+     *
+     * @parameter expression="${yeti.javaSources}" default-value="yeti"
+     */
+    protected String javaSources = "yeti";
+
+    /**
+     * Wheter the compiler output goes first to a staging directory from
+     * which only the changed class files are copied to the output directory.
+     * Unchanged class files keep their timestamp, so mtime based tools 
+     * (jar, surefire, IDEs, rsync) do not redo any work.
+     *
+     * @parameter expression="${yeti.writeIfChanged}" default-value="true"
+     */
+    protected boolean writeIfChanged = true;
+
+    /**
+     * Wheter to delete the class files of yeti sources which were deleted
+     * or renamed since the last compile. Which source produced which class
+     * files is recorded in target/yeti-staging/&lt;output dir name&gt;.manifest
+     *
+     * @parameter expression="${yeti.pruneOrphans}" default-value="true"
+     */
+    protected boolean pruneOrphans = true;
+
+    /**
+     * If greater than 0 the sources are compiled in batches of at most this
+     * many files. Each batch is compiled with a fresh compiler against the
+     * output of the batches before, so the heap the compiler needs is
+     * bounded by the batch size and not by the number of sources. A module
+     * is always compiled after the modules it loads.
+     *
+     * @parameter expression="${yeti.batchSize}" default-value="0"
+     */
+    protected int batchSize = 0;
+
     
     protected File normalize(File f) {
-        try {
-            f = f.getCanonicalFile();
-        } catch (IOException exc) {
-            f = f.getAbsoluteFile();
-        }
-        return f;
+        return CanonicalPaths.get(f);
     }
 
     /**
@@ -109,6 +150,11 @@ public class YetiCompileMojoBase extends YetiMojoSupport {
         return project.getCompileDependencies();
     }
 
+    @Override
+    protected boolean isRecordStats() {
+        return true;
+    }
+
     protected File getOutputDir() throws Exception {
         return outputDir.getAbsoluteFile();
     }
@@ -128,7 +174,7 @@ public class YetiCompileMojoBase extends YetiMojoSupport {
      * @return
      * @throws Exception
      */
-    private List<String> findSourceFiles(List<File> sourceRootDirs) {
+    protected static List<String> findSourceFiles(List<File> sourceRootDirs) {
         try {
             List<String> sourceFiles = new ArrayList<String>();
 
@@ -154,6 +200,192 @@ public class YetiCompileMojoBase extends YetiMojoSupport {
     
   
 
+    /**
+     * Removes the java sources for which javac already created an up to
+     * date class file in the outputDir.
+     */
+    protected List<String> removeJavacCompiled(List<String> sourceFiles,
+            List<File> sourceDirs, File outputDir) throws Exception {
+        if ("yeti".equals(javaSources)) {
+            return sourceFiles;
+        }
+        if (!"javac".equals(javaSources)) {
+            throw new MojoExecutionException("javaSources must be "
+                    + "'yeti' or 'javac' but is: " + javaSources);
+        }
+        List<String> r = new ArrayList<String>();
+        int compiled = 0;
+        for (String fileName : sourceFiles) {
+            File source = new File(fileName);
+            File classFile = javacClassFile(source, sourceDirs, outputDir);
+            if (classFile != null && classFile.exists()
+                    && classFile.lastModified() >= source.lastModified()) {
+                compiled++;
+            } else {
+                r.add(fileName);
+            }
+        }
+        getLog().info(String.format(
+                    "%d java sources are already compiled by javac", compiled));
+        return r;
+    }
+
+    private File javacClassFile(File source, List<File> sourceDirs, 
+            File outputDir) {
+        String name = source.getPath();
+        if (!name.endsWith(".java")) {
+            return null;
+        }
+        for (File dir : sourceDirs) {
+            String dirName = dir.getPath() + File.separator;
+            if (name.startsWith(dirName)) {
+                String rel = name.substring(dirName.length(),
+                        name.length() - ".java".length());
+                return new File(outputDir, rel + ".class");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the sources in dependency ordered batches. Each batch gets a
+     * new compiler classloader (so the compiler state of the previous one
+     * can be collected) with the output of the previous ones on the
+     * classpath. The source directories are not given to the compiler,
+     * so loaded modules of earlier batches are read from their classes.
+     */
+    protected void compileInBatches(Set<String> classpath, File compileDir,
+            List<String> sourceFiles, List<File> sourceDirs) 
+            throws Exception {
+        List<List<String>> batches = 
+            SourceBatches.split(sourceFiles, sourceDirs, batchSize);
+        List<File> noDirs = Collections.emptyList();
+        int i = 1;
+        for (List<String> batch : batches) {
+            getLog().info(String.format("Compiling batch %d of %d (%d files)",
+                        i++, batches.size(), batch.size()));
+            Set<String> batchClasspath = new HashSet<String>(classpath);
+            batchClasspath.add(compileDir.getPath());
+            invokeYeti(batchClasspath, compileArgs(compileDir, batch, noDirs));
+        }
+    }
+
+    protected boolean isWriteIfChanged() {
+        return writeIfChanged;
+    }
+
+    /**
+     * The directory the compiler writes to: the outputDir itself or an
+     * empty staging directory if writeIfChanged is set.
+     */
+    protected File prepareCompileDir(MavenProject p, File outputDir)
+            throws Exception {
+        if (!isWriteIfChanged()) {
+            return outputDir;
+        }
+        File staging = new File(p.getBuild().getDirectory(),
+                "yeti-staging/" + outputDir.getName());
+        FileUtils.deleteDirectory(staging);
+        staging.mkdirs();
+        return staging;
+    }
+
+    /**
+     * Copies the changed classes from the staging directory to outputDir.
+     *
+     * @param startTime when the compile started
+     * @return the relative paths of the files the compiler emitted
+     */
+    protected List<String> finishCompile(File compileDir, File outputDir,
+            long startTime) throws Exception {
+        if (compileDir.equals(outputDir)) {
+            //without staging the files written since the start are taken
+            List<String> emitted = new ArrayList<String>();
+            long since = startTime / 1000 * 1000;
+            for (String f : MainHelper.findFiles(outputDir, "**/*")) {
+                if (new File(outputDir, f).lastModified() >= since) {
+                    emitted.add(f.replace(File.separatorChar, '/'));
+                }
+            }
+            return emitted;
+        }
+        OutputSync sync = new OutputSync();
+        sync.sync(compileDir, outputDir);
+        getLog().info(String.format("%d of %d class files changed",
+                    sync.getWritten(), 
+                    sync.getWritten() + sync.getUnchanged()));
+        return sync.getFiles();
+    }
+
+    protected boolean isPruneOrphans() {
+        return pruneOrphans;
+    }
+
+    /**
+     * Deletes the class files of the sources which are gone since the
+     * last compile.
+     *
+     * @return the manifest to record the compile in or null if orphans
+     *         are not pruned
+     */
+    protected OutputManifest pruneVanished(MavenProject p, File outputDir,
+            List<String> allSources) throws Exception {
+        if (!isPruneOrphans()) {
+            return null;
+        }
+        OutputManifest manifest = OutputManifest.load(new File(
+                    p.getBuild().getDirectory(),
+                    "yeti-staging/" + outputDir.getName() + ".manifest"));
+        int removed = manifest.removeVanished(allSources, outputDir);
+        if (removed > 0) {
+            getLog().info(String.format(
+                        "removed %d class files of deleted sources", removed));
+        }
+        return manifest;
+    }
+
+    /**
+     * Records which class files the compiled sources emitted and deletes
+     * the ones they emitted before but not anymore.
+     */
+    protected void recordOutput(OutputManifest manifest,
+            List<String> sourceFiles, List<File> sourceDirs,
+            List<String> emitted, File outputDir) throws Exception {
+        if (manifest == null) {
+            return;
+        }
+        Map<String, String> owners = new HashMap<String, String>();
+        for (String source : sourceFiles) {
+            owners.put(YetiSources.classPath(new File(source), sourceDirs),
+                    source);
+        }
+        int removed = manifest.update(owners, emitted, outputDir);
+        if (removed > 0) {
+            getLog().info(String.format(
+                        "removed %d class files not generated anymore",
+                        removed));
+        }
+        manifest.save();
+    }
+
+    /**
+     * The arguments for the yeti compiler to compile the sourceFiles
+     * to the outputDir.
+     */
+    protected static String[] compileArgs(File outputDir, 
+            List<String> sourceFiles, List<File> sourceDirs) {
+		String toPath = outputDir.getAbsolutePath();
+		toPath = (toPath.equals("") || toPath.endsWith("/")) ? 
+				toPath : toPath + "/";
+
+		List<String> params = new ArrayList<String>();
+		params.add("-d");
+		params.add(toPath);
+		params.addAll(sourceFiles);
+		for(File f:sourceDirs)params.add(f.getPath());
+		return params.toArray(new String[params.size()]);
+    }
+
     @Override
     protected void doExecute() throws Exception {
         long t0 = System.currentTimeMillis();
@@ -172,9 +404,10 @@ public class YetiCompileMojoBase extends YetiMojoSupport {
         if (!outputDir.exists()) {
             outputDir.mkdirs();
         }
-		String toPath = outputDir.getAbsolutePath();
-		toPath = (toPath.equals("") || toPath.endsWith("/")) ? 
-				toPath : toPath + "/";
+
+        OutputManifest manifest = 
+            pruneVanished(project, outputDir, sourceFiles);
+        sourceFiles = removeJavacCompiled(sourceFiles, sourceDirs, outputDir);
         
 		//some logging
 		if (getLog().isDebugEnabled()) {
@@ -188,14 +421,18 @@ public class YetiCompileMojoBase extends YetiMojoSupport {
 					sourceFiles,
 					sourceDirs));
 
-	
-		List<String> params = new ArrayList<String>();
-		params.add("-d");
-		params.add(toPath);
-		params.addAll(sourceFiles);
-		for(File f:sourceDirs)params.add(f.getPath());
 
-		invokeYeti(classpath, params.toArray(new String[params.size()]));
+        File compileDir = prepareCompileDir(project, outputDir);
+        long compileStart = System.currentTimeMillis();
+        if (batchSize > 0 && sourceFiles.size() > batchSize) {
+            compileInBatches(classpath, compileDir, sourceFiles, sourceDirs);
+        } else {
+            invokeYeti(classpath, 
+                    compileArgs(compileDir, sourceFiles, sourceDirs));
+        }
+        List<String> emitted = 
+            finishCompile(compileDir, outputDir, compileStart);
+        recordOutput(manifest, sourceFiles, sourceDirs, emitted, outputDir);
 
         getLog().info(String.format("compile in %d s", 
 					(System.currentTimeMillis() - t0) / 1000));
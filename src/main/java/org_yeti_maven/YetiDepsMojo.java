@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Writes the dependency graph of the yeti modules (the modules they load
+ * and the java classes they use) as JSON and graphviz DOT without
+ * compiling, and reports the load cycles and the critical path which
+ * serialize the compile.
+ *
+ * @goal deps
+ * @threadSafe
+ * @description writes the dependency graph of the yeti modules
+ */
+public class YetiDepsMojo extends YetiCompileMojoBase {
+
+    /**
+     * The graph as JSON: the modules with their loads and java classes, the
+     * cycles and the critical path.
+     *
+     * @parameter expression="${project.build.directory}/yeti-deps.json"
+     */
+    protected File depsJson;
+
+    /**
+     * The graph for graphviz (dot -Tsvg).
+     *
+     * @parameter expression="${project.build.directory}/yeti-deps.dot"
+     */
+    protected File depsDot;
+
+    /**
+     * The scan results of the sources by their content hash.
+     *
+     * @parameter expression="${project.build.directory}/yeti-deps.cache"
+     */
+    protected File depsCache;
+
+    /**
+     * Wheter modules loading each other in a cycle fail the build.
+     *
+     * @parameter expression="${yeti.deps.failOnCycle}" default-value="false"
+     */
+    protected boolean failOnCycle = false;
+
+    @Override
+    protected void doExecute() throws Exception {
+        long t0 = System.currentTimeMillis();
+        List<File> sourceDirs = getSourceDirectories();
+        ModuleGraph graph = ModuleGraph.build(findSourceFiles(sourceDirs),
+                sourceDirs, depsCache);
+        graph.writeJson(depsJson);
+        graph.writeDot(depsDot);
+        getLog().info(String.format(
+                    "%d yeti modules (%d scanned) in %d ms, written to %s and %s",
+                    graph.size(), graph.getScanned(),
+                    System.currentTimeMillis() - t0, depsJson, depsDot));
+
+        List<String> path = graph.criticalPath();
+        if (!path.isEmpty()) {
+            getLog().info(String.format(
+                        "critical path: %d modules, %d KB of source: %s",
+                        path.size(), graph.bytes(path) / 1024, path));
+        }
+        List<List<String>> cycles = graph.cycles();
+        for (List<String> c : cycles) {
+            getLog().warn("modules loading each other: " + c);
+        }
+        if (failOnCycle && !cycles.isEmpty()) {
+            throw new MojoFailureException(cycles.size()
+                    + " cycles between the yeti modules, see " + depsDot);
+        }
+    }
+}
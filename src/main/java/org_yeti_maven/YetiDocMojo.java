@@ -44,6 +44,7 @@ import org_yeti_maven_executions.MainHelper;
  * @goal doc
  * @requiresDependencyResolution compile
  * @execute phase="generate-sources"
+ * @threadSafe
  */
 public class YetiDocMojo extends YetiMojoSupport implements MavenReport {
 
@@ -215,6 +216,16 @@ public class YetiDocMojo extends YetiMojoSupport implements MavenReport {
         }
     }
 
+    @Override
+    protected boolean isDoc() {
+        return true;
+    }
+
+    @Override
+    protected boolean isRecordStats() {
+        return true;
+    }
+
     @Override
     public void doExecute() throws Exception {
         // SiteRendererSink sink = siteRenderer.createSink(new
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Writes a yeti runtime jar with only the classes of yeti-lib (or yeti)
+ * which the compiled classes of the project reach through the references
+ * in their class files, and the matching ProGuard keep rules. Both are
+ * attached to the project (classifier yeti-runtime), so an android build
+ * can use them instead of the full runtime.
+ *
+ * Classes the runtime only loads by name (reflection) are not found, add
+ * them to keep.
+ *
+ * @goal minimize-runtime
+ * @phase package
+ * @requiresDependencyResolution runtime
+ * @threadSafe
+ */
+public class YetiMinimizeRuntimeMojo extends AbstractMojo {
+
+    /**
+     * @parameter expression="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * @component
+     * @required
+     * @readonly
+     */
+    private MavenProjectHelper projectHelper;
+
+    /**
+     * The directory with the compiled classes of the project.
+     *
+     * @parameter expression="${project.build.outputDirectory}"
+     */
+    protected File outputDir;
+
+    /**
+     * The minimized runtime.
+     *
+     * @parameter expression="${project.build.directory}/${project.build.finalName}-yeti-runtime.jar"
+     */
+    protected File runtimeJar;
+
+    /**
+     * The ProGuard keep rules of the reachable runtime classes.
+     *
+     * @parameter expression="${project.build.directory}/${project.build.finalName}-yeti-runtime.pro"
+     */
+    protected File keepRules;
+
+    /**
+     * Runtime classes which are kept even if they are not reachable (ant
+     * patterns on the class file names, ie <code>yeti/lang/io*</code>).
+     *
+     * @parameter
+     */
+    protected String[] keep;
+
+    /**
+     * The classifier of the attached jar and keep rules.
+     *
+     * @parameter expression="${yeti.runtime.classifier}" default-value="yeti-runtime"
+     */
+    protected String classifier = "yeti-runtime";
+
+    /**
+     * Wheter the jar and the keep rules are attached to the project.
+     *
+     * @parameter expression="${yeti.runtime.attach}" default-value="true"
+     */
+    protected boolean attach = true;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (!outputDir.isDirectory()) {
+            getLog().info("no classes in " + outputDir);
+            return;
+        }
+        File runtime = findRuntime();
+        try {
+            minimize(runtime);
+        } catch (IOException ex) {
+            throw new MojoExecutionException(
+                    "minimizing the yeti runtime failed: " + ex, ex);
+        }
+        if (attach) {
+            projectHelper.attachArtifact(project, "jar", classifier,
+                    runtimeJar);
+            projectHelper.attachArtifact(project, "pro", classifier,
+                    keepRules);
+        }
+    }
+
+    /**
+     * The yeti-lib jar of the dependencies, or the yeti jar.
+     */
+    @SuppressWarnings("unchecked")
+    private File findRuntime() throws MojoExecutionException {
+        File yeti = null;
+        for (Artifact a : (Set<Artifact>) project.getArtifacts()) {
+            if (!YetiMojoSupport.YETI_GROUPID.equals(a.getGroupId())
+                    || a.getFile() == null) {
+                continue;
+            }
+            if (YetiMojoSupport.YETI_LIB_ARTIFACTID.equals(a.getArtifactId())) {
+                return a.getFile();
+            }
+            if (YetiMojoSupport.YETI_ARTIFACTID.equals(a.getArtifactId())) {
+                yeti = a.getFile();
+            }
+        }
+        if (yeti == null) {
+            throw new MojoExecutionException(
+                    "neither yeti-lib nor yeti is a runtime dependency");
+        }
+        return yeti;
+    }
+
+    private void minimize(File runtime) throws IOException {
+        ZipFile zip = new ZipFile(runtime);
+        try {
+            //internal name -> class file info of the runtime classes
+            Map<String, ClassFileInfo> classes =
+                new HashMap<String, ClassFileInfo>();
+            long totalBytes = 0;
+            for (Enumeration<? extends ZipEntry> en = zip.entries();
+                    en.hasMoreElements();) {
+                ZipEntry e = en.nextElement();
+                if (!e.getName().endsWith(".class")) {
+                    continue;
+                }
+                InputStream in = zip.getInputStream(e);
+                try {
+                    classes.put(e.getName().substring(0,
+                                e.getName().length() - 6),
+                            ClassFileInfo.read(in));
+                } finally {
+                    in.close();
+                }
+                totalBytes += e.getSize();
+            }
+
+            LinkedList<String> todo = new LinkedList<String>();
+            addProjectReferences(outputDir, todo);
+            for (String c : classes.keySet()) {
+                if (isKept(c + ".class")) {
+                    todo.add(c);
+                }
+            }
+            Set<String> reachable = new TreeSet<String>();
+            while (!todo.isEmpty()) {
+                String c = todo.removeFirst();
+                ClassFileInfo info = classes.get(c);
+                if (info != null && reachable.add(c)) {
+                    todo.addAll(info.getReferences());
+                }
+            }
+
+            long bytes = writeJar(zip, reachable);
+            writeKeepRules(reachable);
+            getLog().info(String.format(
+                        "%d of %d yeti runtime classes reachable, %d of %d KB,"
+                        + " written to %s", reachable.size(), classes.size(),
+                        bytes / 1024, totalBytes / 1024, runtimeJar));
+        } finally {
+            zip.close();
+        }
+    }
+
+    /** The classes referenced by the class files in dir. */
+    private void addProjectReferences(File dir, LinkedList<String> todo)
+            throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.isDirectory()) {
+                addProjectReferences(f, todo);
+            } else if (f.getName().endsWith(".class")) {
+                todo.addAll(ClassFileInfo.read(f).getReferences());
+            }
+        }
+    }
+
+    private boolean isKept(String classFile) {
+        if (keep == null) {
+            return false;
+        }
+        for (String pattern : keep) {
+            if (SelectorUtils.matchPath(pattern, classFile)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long writeJar(ZipFile zip, Set<String> reachable)
+            throws IOException {
+        runtimeJar.getParentFile().mkdirs();
+        JarOutputStream out =
+            new JarOutputStream(new FileOutputStream(runtimeJar));
+        long bytes = 0;
+        try {
+            byte[] buf = new byte[8192];
+            for (String c : reachable) {
+                ZipEntry e = zip.getEntry(c + ".class");
+                out.putNextEntry(new JarEntry(e.getName()));
+                InputStream in = zip.getInputStream(e);
+                try {
+                    int n;
+                    while ((n = in.read(buf)) != -1) {
+                        out.write(buf, 0, n);
+                        bytes += n;
+                    }
+                } finally {
+                    in.close();
+                }
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return bytes;
+    }
+
+    private void writeKeepRules(Set<String> reachable) throws IOException {
+        PrintWriter out = new PrintWriter(keepRules, "UTF-8");
+        try {
+            out.println("# the yeti runtime classes reachable from "
+                    + project.getId());
+            for (String c : reachable) {
+                out.println("-keep class " + c.replace('/', '.') + " { *; }");
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
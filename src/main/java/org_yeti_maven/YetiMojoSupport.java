@@ -32,6 +32,7 @@ import java.net.URLClassLoader;
 import java.io.File;
 
 
+import org.apache.commons.exec.ExecuteException;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
@@ -52,6 +53,12 @@ import org.apache.maven.project.MavenProjectBuilder;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.project.artifact.InvalidDependencyVersionException;
 import org.apache.maven.shared.dependency.tree.DependencyTreeBuilder;
+import org.codehaus.plexus.util.FileUtils;
+import org_yeti_maven_executions.HeapReportingMain;
+import org_yeti_maven_executions.JavaMainCaller;
+import org_yeti_maven_executions.JavaMainCallerByFork;
+import org_yeti_maven_executions.MainHelper;
+import org_yeti_maven_executions.ThreadOutput;
 
 public abstract class YetiMojoSupport extends AbstractMojo {
 
@@ -60,6 +67,7 @@ public abstract class YetiMojoSupport extends AbstractMojo {
     public static final String YETI_LIB_ARTIFACTID= "yeti-lib";
     public static final String YETI_MAVEN_ARTIFACTID="yeti-maven-plugin";
     public static final String YETI_MAVEN_VERSION="0.2-SNAPSHOT";
+    public static final String YETI_COMPILER_CLASS="yeti.lang.compiler.yeti";
 	public static final String[] INCLUDES = 
 		new String[]{"**/*.yeti","**/*.java"};
 
@@ -137,12 +145,60 @@ public abstract class YetiMojoSupport extends AbstractMojo {
     protected BasicArtifact[] dependencies;
 
     /**
-     * Jvm Arguments.
+     * Jvm Arguments. Used when the yeti compiler runs forked.
      *
      * @parameter
      */
     protected String[] jvmArgs;
 
+    /**
+     * Wheter to run the yeti compiler in a forked JVM ("true") instead of 
+     * the maven JVM ("false"). The forked JVM is started with the jvmArgs, 
+     * so heap, gc and thread stack settings (ie -Xmx1g -Xss8m) only apply 
+     * to the compiler. 
+     *
+     * With "auto" the heap the compile needs is estimated from the size of
+     * the sources and the runs recorded in 
+     * target/yeti-compile-stats.properties. If it does not fit comfortably
+     * into the free heap of the maven JVM the compiler is forked, unless
+     * the recorded runs show the compile is shorter than starting a JVM.
+     * The heap is only measured in forked runs, so the estimate learns 
+     * from past runs once the compile was forked.
+     *
+     * @parameter expression="${yeti.fork}" default-value="false"
+     */
+    protected String fork = "false";
+
+    /**
+     * Stack size (ie "16m" or "512k") of a dedicated thread running the 
+     * in-process yeti compiler. Deeply nested yeti code may need more than 
+     * the default stack. If not set the compiler runs on the maven thread.
+     *
+     * @parameter expression="${yeti.compilerStackSize}"
+     */
+    protected String compilerStackSize;
+
+    /**
+     * The maximum number of yeti compiles running at the same time in the
+     * maven JVM (ie with mvn -T). Further compiles wait in arrival order.
+     * 0 means no limit. As all modules share the limit the value of the 
+     * first compile in the build is used.
+     *
+     * @parameter expression="${yeti.maxParallelCompiles}" default-value="0"
+     */
+    protected int maxParallelCompiles = 0;
+
+    /**
+     * The heap (ie "2g") the in-process yeti compiles running at the same
+     * time may use together according to their estimated heap. Further 
+     * compiles wait in arrival order. Not set means no limit. As all 
+     * modules share the budget the value of the first compile in the build 
+     * is used.
+     *
+     * @parameter expression="${yeti.compileHeapBudget}"
+     */
+    protected String compileHeapBudget;
+
     /**
      * compiler additionnals arguments
      *
@@ -223,6 +279,8 @@ public abstract class YetiMojoSupport extends AbstractMojo {
      */
     private DependencyTreeBuilder dependencyTreeBuilder;
 
+    /** Wheter this execution recorded a compiler run. */
+    private boolean yetiRun = false;
 
     /**
      * This method resolves the dependency artifacts from the project.
@@ -288,10 +346,16 @@ public abstract class YetiMojoSupport extends AbstractMojo {
     public void addToClasspath(String groupId, String artifactId, 
 			String version, Set<String> classpath, boolean addDependencies) 
 		throws Exception {
-        addToClasspath(
-				factory.createArtifact(groupId, artifactId, version, 
-					Artifact.SCOPE_RUNTIME, "jar"), 
-				classpath, addDependencies);
+        long t0 = System.currentTimeMillis();
+        try {
+            addToClasspath(
+                    factory.createArtifact(groupId, artifactId, version, 
+                        Artifact.SCOPE_RUNTIME, "jar"), 
+                    classpath, addDependencies);
+        } finally {
+            CompileStatus.get().addResolveMillis(
+                    System.currentTimeMillis() - t0);
+        }
     }
 
     protected void addToClasspath(Artifact artifact, Set<String> classpath, 
@@ -307,8 +371,10 @@ public abstract class YetiMojoSupport extends AbstractMojo {
     }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
+        long t0 = System.currentTimeMillis();
         try {
             doExecute();
+            recordWallMillis(System.currentTimeMillis() - t0);
         } catch (MojoExecutionException exc) {
             throw exc;
         } catch (MojoFailureException exc) {
@@ -330,23 +396,177 @@ public abstract class YetiMojoSupport extends AbstractMojo {
 	protected void invokeYeti(Set<String> classpathFiles, String[] args) 
 		throws Exception
 	{
-		//check wheter only the lib is on the classpath
-		//then include the full yeti jar
+		addYetiCompilerToClasspath(classpathFiles);
+
+		//display the cmd if necessary
+		if(displayCmd)
+			getLog().info("yeti "
+					+ Arrays.toString(args) 
+					+ "\nClasspath:\n");
+
+		CompileStats stats = CompileStats.load(getStatsFile());
+		String key = getStatsKey();
+		int sources = CompileStats.sourceCount(args);
+		long sourceBytes = CompileStats.sourceBytes(args);
+
+		boolean forked = isForkYeti();
+		if("auto".equals(getForkMode())) {
+			forked = chooseFork(stats, key, sourceBytes, 
+					classpathFiles.size());
+		}
+
+		long heapEstimate = forked ? -1 
+			: stats.estimateHeap(key, sourceBytes, classpathFiles.size());
+		CompileScheduler scheduler = CompileScheduler.get(maxParallelCompiles,
+				MainHelper.parseSize(compileHeapBudget));
+		CompileScheduler.Permit permit = scheduler.acquire(heapEstimate);
+		if(scheduler.isLimited())
+			getLog().info(String.format(
+						"waited %d ms for the compile scheduler (%s)",
+						permit.getWaited(), scheduler));
+
+		CompileStatus.Run run = CompileStatus.get().start(
+				getCompiledProject().getArtifactId() + ":" + key, sources, 
+				heapEstimate);
+		long t0 = System.currentTimeMillis();
+		long heap = -1;
+		try {
+			if(forked) {
+				heap = forkYeti(classpathFiles, args);
+			} else {
+				invokeYeti(createCompilerClassLoader(classpathFiles), args);
+			}
+		} finally {
+			permit.release();
+			run.finish(isDoc(), heap);
+		}
+		if(isRecordStats()) {
+			stats.record(key, sources, sourceBytes, 
+					System.currentTimeMillis() - t0, heap, forked);
+			stats.save();
+			yetiRun = true;
+		}
+	}
+
+	/**
+	 * The project the compiler runs for, its target directory keeps the
+	 * statistics of the runs.
+	 */
+	protected MavenProject getCompiledProject() {
+		return project;
+	}
+
+	private File getStatsFile() {
+		return new File(getCompiledProject().getBuild().getDirectory(),
+				"yeti-compile-stats.properties");
+	}
+
+	/**
+	 * Records the wall time of an execution which ran the compiler, 
+	 * including the resolving and scanning around the compiler runs.
+	 */
+	private void recordWallMillis(long millis) throws Exception {
+		if(!yetiRun)
+			return;
+		CompileStats stats = CompileStats.load(getStatsFile());
+		stats.recordWall(getStatsKey(), millis);
+		stats.save();
+	}
+
+	/**
+	 * Check wheter only the lib is on the classpath then include the full 
+	 * yeti jar.
+	 */
+	protected void addYetiCompilerToClasspath(Set<String> classpathFiles)
+		throws Exception
+	{
 		if( !("".equals(yetiLibOnly)) && !("no".equals(yetiLibOnly))) {
 			addToClasspath(YETI_GROUPID,
 							YETI_ARTIFACTID, 
 							yetiLibOnly, 
 							classpathFiles);
 		}
+	}
 
-		//display the cmd if necessary
-		if(displayCmd)
-			getLog().info("yeti "
-					+ Arrays.toString(args) 
-					+ "\nClasspath:\n");
-		
-		//creat classloader	
-		List urls = new ArrayList();
+	/**
+	 * Wheter this mojo generates documentation (for the statistics).
+	 */
+	protected boolean isDoc() {
+		return false;
+	}
+
+	/**
+	 * Wheter the compiler runs of this mojo are recorded in
+	 * target/yeti-compile-stats.properties, only compiles and docs are.
+	 */
+	protected boolean isRecordStats() {
+		return false;
+	}
+
+	/**
+	 * The key under which the compiler runs of this mojo are recorded.
+	 */
+	protected String getStatsKey() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * "true", "false" or "auto".
+	 */
+	protected String getForkMode() throws MojoExecutionException {
+		if(!"true".equals(fork) && !"false".equals(fork) 
+				&& !"auto".equals(fork))
+			throw new MojoExecutionException(
+					"fork must be true, false or auto but is: " + fork);
+		return fork;
+	}
+
+	/**
+	 * Wheter invokeYeti always runs the compiler in a forked JVM.
+	 */
+	protected boolean isForkYeti() throws MojoExecutionException {
+		return "true".equals(getForkMode());
+	}
+
+	/**
+	 * The time a forked JVM needs to start and load the compiler.
+	 */
+	static final long FORK_MILLIS = 2000;
+
+	/**
+	 * Decides for fork=auto wheter the compile is forked. It is forked if
+	 * its estimated heap does not fit into the free heap, or if it needs 
+	 * more than half of it and the compile is not known to be shorter 
+	 * than starting a JVM. 
+	 *
+	 * The heap is only learned from forked runs, until one is recorded it
+	 * is guessed from the size of the sources and the classpath.
+	 */
+	protected boolean chooseFork(CompileStats stats, String key, 
+			long sourceBytes, int classpathEntries) {
+		long mb = 1024 * 1024;
+		long heap = stats.estimateHeap(key, sourceBytes, classpathEntries);
+		long headroom = CompileStats.heapHeadroom();
+		long millis = stats.estimateMillis(key, sourceBytes);
+		boolean quick = millis >= 0 && millis < FORK_MILLIS;
+		boolean forked = heap > headroom 
+			|| (heap > headroom / 2 && !quick);
+		getLog().info(String.format(
+					"%s: estimated %d MB heap%s for %d KB of sources, "
+					+ "%d MB free in the maven JVM", 
+					forked ? "forking compiler" : "compiling in-process",
+					heap / mb,
+					millis < 0 ? "" : String.format(" and %d ms", millis),
+					sourceBytes / 1024, headroom / mb));
+		return forked;
+	}
+
+	/**
+	 * Creates the classloader on which the yeti compiler is run.
+	 */
+	protected ClassLoader createCompilerClassLoader(
+			Collection<String> classpathFiles) {
+		List<URL> urls = new ArrayList<URL>();
 		for(String file : classpathFiles) {
 			try {
 				URL url = new File(file).toURI().toURL();
@@ -360,23 +580,117 @@ public abstract class YetiMojoSupport extends AbstractMojo {
 						+file+" reason: "+ex.getMessage(),ex);
 			}
 		}
-		URL[] urlsA = (URL[]) urls.toArray(new URL[urls.size()]);
-		ClassLoader compileClassLoader = 
+		URL[] urlsA = urls.toArray(new URL[urls.size()]);
+		ClassLoader cl = 
 			new URLClassLoader(urlsA,ClassLoader.getSystemClassLoader());
+		CompileStatus.get().addClassLoader(cl);
+		return cl;
+	}
+
+	/**
+	 * Runs the yeti compiler in a new JVM with the configured jvmArgs.
+	 *
+	 * @return the heap the compiler needed, measured in the forked JVM, 
+	 *         or -1 if it was not reported
+	 */
+	protected long forkYeti(Collection<String> classpathFiles, String[] args)
+		throws Exception
+	{
+		List<String> classpath = new ArrayList<String>(classpathFiles);
+		classpath.add(MainHelper.locateJar(HeapReportingMain.class));
+		File heapFile = File.createTempFile("yeti-heap", ".txt");
+		List<String> mainArgs = new ArrayList<String>();
+		mainArgs.add(heapFile.getAbsolutePath());
+		mainArgs.add(YETI_COMPILER_CLASS);
+		mainArgs.addAll(Arrays.asList(args));
+		try {
+			JavaMainCaller caller = 
+				new JavaMainCallerByFork(this, 
+						HeapReportingMain.class.getName(), 
+						MainHelper.toMultiPath(classpath), getForkJvmArgs(), 
+						mainArgs.toArray(new String[mainArgs.size()]), 
+						forceUseArgFile);
+			caller.redirectToLog();
+			try {
+				caller.run(displayCmd, true);
+			} catch(ExecuteException ex) {
+				if(ex.getExitValue() == HeapReportingMain.COMPILE_FAILED)
+					throw new CompileFailedException(
+							"yeti sources do not compile (forked JVM)");
+				throw new MojoExecutionException(
+						"yeti compiler failed in forked JVM with exit code "
+						+ ex.getExitValue(), ex);
+			}
+			String heap = FileUtils.fileRead(heapFile, "UTF-8").trim();
+			return heap.length() == 0 ? -1 : Long.parseLong(heap);
+		} finally {
+			heapFile.delete();
+		}
+	}
 
+	/**
+	 * The arguments of the JVM forked for the yeti compiler.
+	 */
+	protected String[] getForkJvmArgs() {
+		return jvmArgs;
+	}
+
+	/**
+	 * Runs the yeti compiler main on the given classloader. If a 
+	 * compilerStackSize is set the compiler runs on its own thread with 
+	 * that stack size.
+	 */
+	protected void invokeYeti(final ClassLoader compileClassLoader, 
+			final String[] args) throws Exception {
 		//get the yeti main method
-		Method yetiMethod = null;
+		final Method yetiMethod;
 		try {
 			yetiMethod = 
-				(compileClassLoader.loadClass("yeti.lang.compiler.yeti"))
+				(compileClassLoader.loadClass(YETI_COMPILER_CLASS))
 					.getMethod("main", String[].class);
 		}catch(ClassNotFoundException ex) {
 			throw new IllegalArgumentException(
 					"The yeti.jar must be on the classpath");
 		}
 
-		//invoke yeti main
+		long stackSize = MainHelper.parseSize(compilerStackSize);
+		if(stackSize <= 0) {
+			invokeYetiMain(yetiMethod, compileClassLoader, args);
+			return;
+		}
+
+		final Throwable[] failure = new Throwable[1];
+		Thread compileThread = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					invokeYetiMain(yetiMethod, compileClassLoader, args);
+				} catch (Throwable ex) {
+					failure[0] = ex;
+				}
+			}
+		}, "yeti-compiler", stackSize);
+		compileThread.start();
+		compileThread.join();
+		if(failure[0] instanceof Exception)
+			throw (Exception) failure[0];
+		if(failure[0] instanceof Error)
+			throw (Error) failure[0];
+	}
+
+	/**
+	 * Wheter the System.out/err of the in-process compiler goes line by 
+	 * line to the log of this execution. Without this the output of
+	 * parallel executions would interleave.
+	 */
+	protected boolean isCaptureOutput() {
+		return true;
+	}
+
+	private void invokeYetiMain(Method yetiMethod, 
+			ClassLoader compileClassLoader, String[] args) throws Exception {
 		ClassLoader oCl = Thread.currentThread().getContextClassLoader();
+		if(isCaptureOutput())
+			ThreadOutput.start(getLog());
         try{
 			Thread.currentThread().setContextClassLoader(compileClassLoader);
             yetiMethod.invoke(null,(Object)args);
@@ -385,12 +699,14 @@ public abstract class YetiMojoSupport extends AbstractMojo {
                 Exception e = (Exception) ex.getCause();
                 if("yeti.lang.compiler.CompileException".equals(
 							e.getClass().getName()))
-                    throw new MojoExecutionException(e.getMessage());
+                    throw new CompileFailedException(e.getMessage());
                 else
                     throw e;
             }else throw ex;
         }finally {
 			Thread.currentThread().setContextClassLoader(oCl);
+			if(isCaptureOutput())
+				ThreadOutput.stop();
 		}
 	}
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Runs the compile of the yeti sources in a forked JVM with the Java Flight
+ * Recorder enabled and summarizes the recording in
+ * target/yeti-profile/summary.txt: the top compiler methods, the allocation
+ * hotspots, the GC pauses and the file I/O. Needs a JDK with the jfr tool
+ * (JDK 11 or later, 8u262 or later).
+ *
+ * @goal profile-compile
+ * @requiresDependencyResolution compile
+ * @threadSafe
+ */
+public class YetiProfileCompileMojo extends YetiCompileMojoBase {
+
+    /**
+     * Directory for the recordings and the summary.
+     *
+     * @parameter expression="${project.build.directory}/yeti-profile"
+     */
+    protected File profileDir;
+
+    /**
+     * The JFR settings used for the recording ("default" or "profile" or
+     * the path of a .jfc file).
+     *
+     * @parameter expression="${yeti.profile.settings}" default-value="profile"
+     */
+    protected String jfrSettings = "profile";
+
+    /**
+     * The number of entries in each list of the summary.
+     *
+     * @parameter expression="${yeti.profile.top}" default-value="20"
+     */
+    protected int top = 20;
+
+    private final List<File> recordings = new ArrayList<File>();
+
+    /**
+     * The compiler always runs forked, so the recording only contains the
+     * compile.
+     */
+    @Override
+    protected String getForkMode() {
+        return "true";
+    }
+
+    @Override
+    protected synchronized String[] getForkJvmArgs() {
+        File recording = new File(profileDir,
+                "compile-" + (recordings.size() + 1) + ".jfr");
+        recordings.add(recording);
+        List<String> args = new ArrayList<String>();
+        if (jvmArgs != null) {
+            args.addAll(Arrays.asList(jvmArgs));
+        }
+        args.add("-XX:StartFlightRecording=settings=" + jfrSettings
+                + ",filename=" + recording.getAbsolutePath()
+                + ",dumponexit=true");
+        return args.toArray(new String[args.size()]);
+    }
+
+    @Override
+    protected void doExecute() throws Exception {
+        FileUtils.deleteDirectory(profileDir);
+        profileDir.mkdirs();
+        recordings.clear();
+        super.doExecute();
+
+        File jfr = findJfrTool();
+        if (jfr == null) {
+            getLog().warn("no jfr tool found in "
+                    + System.getProperty("java.home")
+                    + ", the recordings are in " + profileDir);
+            return;
+        }
+        JfrSummary summary = new JfrSummary();
+        for (File recording : recordings) {
+            if (recording.isFile()) {
+                print(jfr, recording, summary);
+            } else {
+                getLog().warn("no recording written to " + recording);
+            }
+        }
+
+        StringWriter text = new StringWriter();
+        summary.write(new PrintWriter(text), top);
+        File summaryFile = new File(profileDir, "summary.txt");
+        FileWriter out = new FileWriter(summaryFile);
+        try {
+            out.write(text.toString());
+        } finally {
+            out.close();
+        }
+        for (String line : text.toString().split("\r?\n")) {
+            getLog().info(line);
+        }
+        getLog().info("compile profile written to " + summaryFile);
+    }
+
+    private void print(File jfr, File recording, JfrSummary summary)
+            throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(jfr.getAbsolutePath(), "print",
+                "--json", "--events", JfrSummary.EVENTS,
+                recording.getAbsolutePath());
+        if (displayCmd) {
+            getLog().info("cmd: " + pb.command());
+        }
+        Process p = pb.start();
+        p.getOutputStream().close();
+        BufferedReader in = new BufferedReader(
+                new InputStreamReader(p.getInputStream(), "UTF-8"));
+        try {
+            summary.read(in);
+        } catch (IOException ex) {
+            getLog().warn("could not read the events of " + recording
+                    + ": " + ex.getMessage());
+        } finally {
+            in.close();
+        }
+        //the messages of jfr are kept apart from the JSON
+        BufferedReader err = new BufferedReader(
+                new InputStreamReader(p.getErrorStream()));
+        try {
+            for (String l = err.readLine(); l != null; l = err.readLine()) {
+                getLog().warn("jfr: " + l);
+            }
+        } finally {
+            err.close();
+        }
+        int exit = p.waitFor();
+        if (exit != 0) {
+            getLog().warn("jfr print of " + recording + " exited with "
+                    + exit);
+        }
+    }
+
+    private File findJfrTool() {
+        String exe = File.separatorChar == '\\' ? "jfr.exe" : "jfr";
+        File home = new File(System.getProperty("java.home"));
+        File[] candidates = {
+            new File(home, "bin" + File.separator + exe),
+            //a JDK 8 java.home is the jre directory
+            new File(home.getParentFile(), "bin" + File.separator + exe)
+        };
+        for (File f : candidates) {
+            if (f.isFile()) {
+                return f;
+            }
+        }
+        return null;
+    }
+}
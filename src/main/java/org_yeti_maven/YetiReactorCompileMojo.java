@@ -0,0 +1,385 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Compiles the yeti sources of all modules in the reactor. The modules are
+ * compiled in reactor order on one shared yeti compiler classloader, so the
+ * compiler is loaded and warmed up only once instead of once per module.
+ * Each module is still compiled to its own output directory.
+ *
+ * The shared classloader has only the compiler and the dependency jars all
+ * modules of the group have in common. Each module is compiled on its own
+ * child loader with the rest of its classpath, so it sees only what it
+ * declares and not the classes of its siblings.
+ *
+ * The sourceDir, javaSources and batchSize of each module are taken from
+ * the configuration of this plugin in the module (the compile execution
+ * over the plugin configuration), the values of this goal are the
+ * defaults. The compiles go through the compile scheduler and are
+ * recorded in the target directory of the module like the ones of the
+ * compile goal.
+ *
+ * A new compiler classloader is only started when a module needs a
+ * different version of a dependency than the modules before.
+ *
+ * @goal compile-all
+ * @aggregator
+ * @requiresDependencyResolution compile
+ */
+public class YetiReactorCompileMojo extends YetiCompileMojoBase {
+
+    /**
+     * @parameter expression="${session}"
+     * @required
+     * @readonly
+     */
+    protected MavenSession session;
+
+    /**
+     * The descriptor of this plugin, to find its configuration in the
+     * modules.
+     *
+     * @parameter expression="${plugin}"
+     * @required
+     * @readonly
+     */
+    protected PluginDescriptor pluginDescriptor;
+
+    /**
+     * One module of the reactor which has yeti sources.
+     */
+    private static class ModuleCompile {
+        MavenProject project;
+        File outputDir;
+        List<File> sourceDirs;
+        List<String> sourceFiles;
+        List<String> classpath;
+        String javaSources;
+        int batchSize;
+    }
+
+    /** The module which is compiled, null between the modules. */
+    private ModuleCompile current;
+    /** The compiler classloader of the group, null if it is forked. */
+    private ClassLoader sharedLoader;
+    /** The classpath of the sharedLoader. */
+    private Set<String> shared;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void doExecute() throws Exception {
+        long t0 = System.currentTimeMillis();
+        List<MavenProject> projects = session.getSortedProjects();
+
+        //output directories of the reactor projects, so that dependencies
+        //on other modules use the fresh classes and not an installed jar
+        Map<String, String> reactorOutputs = new HashMap<String, String>();
+        for (MavenProject p : projects) {
+            reactorOutputs.put(p.getGroupId() + ":" + p.getArtifactId(),
+                    normalize(new File(p.getBuild().getOutputDirectory()))
+                        .getPath());
+        }
+
+        //collect the modules with yeti sources
+        List<ModuleCompile> modules = new ArrayList<ModuleCompile>();
+        for (MavenProject p : projects) {
+            Xpp3Dom config = getConfiguration(p);
+            List<File> sourceDirs = getSourceDirectories(p, config);
+            List<String> sourceFiles = findSourceFiles(sourceDirs);
+            if (sourceFiles.isEmpty()) {
+                continue;
+            }
+            ModuleCompile m = new ModuleCompile();
+            m.project = p;
+            m.outputDir = normalize(new File(p.getBuild().getOutputDirectory()));
+            m.sourceDirs = sourceDirs;
+            m.sourceFiles = sourceFiles;
+            m.classpath = getClasspathElements(p, reactorOutputs);
+            m.javaSources = getValue(config, "javaSources", javaSources);
+            String size = getValue(config, "batchSize", 
+                    String.valueOf(batchSize));
+            try {
+                m.batchSize = Integer.parseInt(size.trim());
+            } catch (NumberFormatException ex) {
+                throw new MojoExecutionException("batchSize of " 
+                        + p.getArtifactId() + " is not a number: " + size);
+            }
+            modules.add(m);
+        }
+        if (modules.isEmpty()) {
+            getLog().info("No yeti sources in reactor");
+            return;
+        }
+
+        //compile on as few compiler classloaders as possible
+        Map<String, String> groupVersions = new HashMap<String, String>();
+        List<ModuleCompile> group = new ArrayList<ModuleCompile>();
+        int invocations = 0;
+        for (ModuleCompile m : modules) {
+            if (!isCompatible(m.project, groupVersions)) {
+                invocations += compileGroup(group);
+                group.clear();
+                groupVersions.clear();
+            }
+            for (Artifact a : (Set<Artifact>) m.project.getArtifacts()) {
+                groupVersions.put(a.getDependencyConflictId(), a.getVersion());
+            }
+            group.add(m);
+        }
+        invocations += compileGroup(group);
+
+        getLog().info(String.format(
+                    "compiled %d modules with %d compiler classloaders in %d s",
+                    modules.size(), invocations,
+                    (System.currentTimeMillis() - t0) / 1000));
+    }
+
+    /**
+     * Compiles the modules one after the other on one compiler classloader
+     * with the jars all of them use, each module on a child loader of it
+     * with the rest of its own classpath.
+     *
+     * @return the number of compiler classloaders used
+     */
+    private int compileGroup(List<ModuleCompile> group) throws Exception {
+        if (group.isEmpty()) {
+            return 0;
+        }
+        Set<String> common = new LinkedHashSet<String>();
+        for (String e : group.get(0).classpath) {
+            if (new File(e).isFile()) {
+                common.add(e);
+            }
+        }
+        for (ModuleCompile m : group) {
+            common.retainAll(m.classpath);
+        }
+        boolean forked = isForkYeti();
+        if (!forked) {
+            shared = new LinkedHashSet<String>(common);
+            addYetiCompilerToClasspath(shared);
+            sharedLoader = super.createCompilerClassLoader(shared);
+        }
+        try {
+            for (ModuleCompile m : group) {
+                current = m;
+                javaSources = m.javaSources;
+                batchSize = m.batchSize;
+                compileModule(m);
+            }
+        } finally {
+            current = null;
+            sharedLoader = null;
+            shared = null;
+        }
+        return forked ? group.size() : 1;
+    }
+
+    /**
+     * Compiles one module like the compile goal does.
+     */
+    private void compileModule(ModuleCompile m) throws Exception {
+        if (!m.outputDir.exists()) {
+            m.outputDir.mkdirs();
+        }
+        OutputManifest manifest =
+            pruneVanished(m.project, m.outputDir, m.sourceFiles);
+        List<String> sourceFiles =
+            removeJavacCompiled(m.sourceFiles, m.sourceDirs, m.outputDir);
+        getLog().info(String.format("Compiling %d source files of %s to %s",
+                    sourceFiles.size(), m.project.getArtifactId(),
+                    m.outputDir));
+        File compileDir = prepareCompileDir(m.project, m.outputDir);
+        Set<String> classpath = new LinkedHashSet<String>(m.classpath);
+        long compileStart = System.currentTimeMillis();
+        if (batchSize > 0 && sourceFiles.size() > batchSize) {
+            compileInBatches(classpath, compileDir, sourceFiles, m.sourceDirs);
+        } else {
+            invokeYeti(classpath,
+                    compileArgs(compileDir, sourceFiles, m.sourceDirs));
+        }
+        List<String> emitted =
+            finishCompile(compileDir, m.outputDir, compileStart);
+        recordOutput(manifest, sourceFiles, m.sourceDirs, emitted,
+                m.outputDir);
+    }
+
+    /**
+     * In a group compiled in-process the compiler runs on a child of the
+     * shared classloader with the rest of the classpath of the module.
+     */
+    @Override
+    protected ClassLoader createCompilerClassLoader(
+            Collection<String> classpathFiles) {
+        if (sharedLoader == null) {
+            return super.createCompilerClassLoader(classpathFiles);
+        }
+        List<String> own = new ArrayList<String>(classpathFiles);
+        own.removeAll(shared);
+        URL[] urls = new URL[own.size()];
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = new File(own.get(i)).toURI().toURL();
+            } catch (MalformedURLException ex) {
+                throw new IllegalArgumentException(
+                        "Could not make URL of file:" + own.get(i), ex);
+            }
+        }
+        ClassLoader cl = new URLClassLoader(urls, sharedLoader);
+        CompileStatus.get().addClassLoader(cl);
+        return cl;
+    }
+
+    /**
+     * The runs are recorded in the module, like the ones of its compile
+     * goal.
+     */
+    @Override
+    protected MavenProject getCompiledProject() {
+        return current == null ? project : current.project;
+    }
+
+    @Override
+    protected String getStatsKey() {
+        return current == null ? super.getStatsKey()
+            : YetiCompileMojo.class.getSimpleName();
+    }
+
+    /**
+     * A module can join the current compiler classloader if it does not
+     * need another version of an artifact already on it.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isCompatible(MavenProject p,
+            Map<String, String> groupVersions) {
+        for (Artifact a : (Set<Artifact>) p.getArtifacts()) {
+            String version = groupVersions.get(a.getDependencyConflictId());
+            if (version != null && !version.equals(a.getVersion())) {
+                getLog().debug(p.getArtifactId() + " needs " + a
+                        + " - starting new compiler classloader");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> getClasspathElements(MavenProject p,
+            Map<String, String> reactorOutputs) throws Exception {
+        //dependency jars of reactor modules are replaced by their output
+        Set<String> reactorJars = new LinkedHashSet<String>();
+        List<String> reactorDirs = new ArrayList<String>();
+        for (Artifact a : (Set<Artifact>) p.getArtifacts()) {
+            String out = reactorOutputs.get(a.getGroupId() + ":"
+                    + a.getArtifactId());
+            if (out != null && a.getFile() != null) {
+                reactorJars.add(normalize(a.getFile()).getPath());
+                reactorDirs.add(out);
+            }
+        }
+        List<String> r = new ArrayList<String>(reactorDirs);
+        for (String e : (List<String>) TychoUtilities.addOsgiClasspathElements(
+                    p, p.getCompileClasspathElements())) {
+            if (!reactorJars.contains(normalize(new File(e)).getPath())) {
+                r.add(e);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * The sourceDir of the module, relative to its basedir, or else its
+     * src/main/yeti.
+     */
+    private List<File> getSourceDirectories(MavenProject p, Xpp3Dom config) {
+        List<File> r = new ArrayList<File>();
+        File sd = new File(p.getBuild().getSourceDirectory(), "../yeti");
+        String configured = getValue(config, "sourceDir", null);
+        if (configured != null) {
+            sd = new File(configured);
+            if (!sd.isAbsolute()) {
+                sd = new File(p.getBasedir(), configured);
+            }
+        }
+        if (!sd.exists()) {
+            sd = new File(p.getBasedir(), "src/main/yeti");
+        }
+        if (sd.exists()) {
+            r.add(normalize(sd));
+        }
+        return r;
+    }
+
+    /**
+     * The configuration of this plugin in the module: the configuration of
+     * its compile execution over the plugin configuration. Null if the
+     * module does not configure the plugin.
+     */
+    @SuppressWarnings("unchecked")
+    private Xpp3Dom getConfiguration(MavenProject p) {
+        for (Plugin plugin : (List<Plugin>) p.getBuildPlugins()) {
+            if (!pluginDescriptor.getGroupId().equals(plugin.getGroupId())
+                    || !pluginDescriptor.getArtifactId().equals(
+                        plugin.getArtifactId())) {
+                continue;
+            }
+            Xpp3Dom config = (Xpp3Dom) plugin.getConfiguration();
+            for (PluginExecution e : 
+                    (List<PluginExecution>) plugin.getExecutions()) {
+                if (e.getGoals().contains("compile")
+                        && e.getConfiguration() != null) {
+                    Xpp3Dom c = new Xpp3Dom((Xpp3Dom) e.getConfiguration());
+                    config = config == null ? c
+                        : Xpp3Dom.mergeXpp3Dom(c, config);
+                }
+            }
+            return config;
+        }
+        return null;
+    }
+
+    private static String getValue(Xpp3Dom config, String name, 
+            String defaultValue) {
+        Xpp3Dom child = config == null ? null : config.getChild(name);
+        if (child == null || child.getValue() == null
+                || child.getValue().trim().length() == 0) {
+            return defaultValue;
+        }
+        return child.getValue().trim();
+    }
+}
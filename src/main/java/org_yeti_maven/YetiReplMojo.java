@@ -15,15 +15,23 @@
  */
 package org_yeti_maven;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 
 
@@ -61,10 +69,57 @@ public class YetiReplMojo extends YetiMojoSupport {
      * The commands that will be executed line by line on the repl right after it
      * is started and before user input is excepted, lines are seperated by double-semiclon ;;.
      *
+     * The leading load, import and definition (name args = expr) lines are
+     * compiled once into a preload module which is cached in replCacheDir
+     * for the same commands and classpath, later starts just load it. The
+     * commands from the first other one on are run as given.
+     *
      * @parameter expression="${commands}"
      */
     protected String commands;
 
+    /**
+     * Wheter the console is read with jline and completes the classes and
+     * yeti modules of the classpath on tab. The symbols are indexed in
+     * replCacheDir and only indexed again for changed jars.
+     *
+     * @parameter expression="${yeti.repl.completion}" default-value="true"
+     */
+    protected boolean completion = true;
+
+    /**
+     * The jline version used for completion if jline is not on the
+     * classpath of the project.
+     *
+     * @parameter expression="${yeti.repl.jlineVersion}" default-value="0.9.94"
+     */
+    protected String jlineVersion = "0.9.94";
+
+    /**
+     * Wheter the repl picks up the changed classes of the project (ie
+     * after mvn yeti:compile in another shell) without a restart. The
+     * output directories are checked every reloadInterval ms and a changed
+     * module is used on its next load.
+     *
+     * @parameter expression="${yeti.repl.reload}" default-value="true"
+     */
+    protected boolean reload = true;
+
+    /**
+     * How often (in ms) the output directories are checked for changed
+     * classes when reload is on.
+     *
+     * @parameter expression="${yeti.repl.reloadInterval}" default-value="1000"
+     */
+    protected long reloadInterval = 1000;
+
+    /**
+     * The directory of the compiled startup commands and the symbol index.
+     *
+     * @parameter expression="${project.build.directory}/yeti-repl"
+     */
+    protected File replCacheDir;
+
     /**
      * The directory which contains yeti source files
      *
@@ -79,7 +134,27 @@ public class YetiReplMojo extends YetiMojoSupport {
      */
     protected File testSourceDir;
 
-    
+    private ReplPreload preload;
+    private String preloadModule;
+    /** the cache directory of the compiled startup definitions or null */
+    private File preloadDir;
+
+    /**
+     * The repl needs the console of maven so it is never forked.
+     */
+    @Override
+    protected String getForkMode() {
+        return "false";
+    }
+
+    /**
+     * The repl talks directly to the console.
+     */
+    @Override
+    protected boolean isCaptureOutput() {
+        return false;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected void doExecute() throws Exception {
@@ -94,6 +169,219 @@ public class YetiReplMojo extends YetiMojoSupport {
             classpath.addAll(project.getRuntimeClasspathElements());
         }
 
-		invokeYeti(classpath, new String[]{});	
+		String input = null;
+		if (commands != null && commands.trim().length() > 0)
+			input = prepareCommands(classpath);
+
+		InputStream in = System.in;
+		InputStream replIn = in;
+		if (completion) {
+			ReplConsole console = createConsole(classpath);
+			if (console != null) {
+				replIn = console.getInput();
+				console.start();
+			}
+		}
+		if (input != null && input.length() > 0) {
+			getLog().debug("repl startup commands:\n" + input);
+			replIn = new SequenceInputStream(
+						new ByteArrayInputStream(input.getBytes()), replIn);
+		}
+		if (replIn != in)
+			System.setIn(replIn);
+		ReloadingClassLoader reloading = null;
+		try {
+			if (reload) {
+				reloading = createReloadingClassLoader(classpath);
+				reloading.startWatching(reloadInterval, getLog());
+				invokeYeti(reloading, new String[]{});
+			} else {
+				//not a compile - the scheduler permit would be held for the
+				//whole session
+				addYetiCompilerToClasspath(classpath);
+				invokeYeti(createCompilerClassLoader(classpath),
+						new String[]{});
+			}
+		} finally {
+			if (reloading != null)
+				reloading.stopWatching();
+			System.setIn(in);
+		}
+    }
+
+    /**
+     * Indexes the symbols of the classpath and creates the jline console
+     * completing them. Null if jline is not available.
+     */
+    private ReplConsole createConsole(Set<String> classpath) {
+        try {
+            long t0 = System.currentTimeMillis();
+            SymbolIndex index = SymbolIndex.build(classpath,
+                    new File(replCacheDir, "symbols.idx"));
+            getLog().info(String.format(
+                        "indexed %d symbols in %d ms (%d classpath entries scanned)",
+                        index.size(), System.currentTimeMillis() - t0,
+                        index.getReindexed()));
+
+            ClassLoader cl = createCompilerClassLoader(classpath);
+            try {
+                cl.loadClass("jline.ConsoleReader");
+            } catch (ClassNotFoundException ex) {
+                Set<String> jline = new HashSet<String>();
+                addToClasspath("jline", "jline", jlineVersion, jline, false);
+                cl = createCompilerClassLoader(jline);
+            }
+            return new ReplConsole(cl, index);
+        } catch (Exception ex) {
+            getLog().warn("no completion in the repl: " + ex);
+            return null;
+        }
+    }
+
+    /**
+     * The canonical paths of the output directories of the project.
+     */
+    private Set<String> outputDirs() {
+        Set<String> outputDirs = new HashSet<String>();
+        outputDirs.add(CanonicalPaths.get(
+                    new File(project.getBuild().getOutputDirectory())).getPath());
+        outputDirs.add(CanonicalPaths.get(
+                    new File(project.getBuild().getTestOutputDirectory())).getPath());
+        return outputDirs;
+    }
+
+    /**
+     * The dependencies (and the yeti compiler) go to a stable loader, the
+     * output directories of the project and the compiled startup
+     * definitions to the reloaded child. The startup definitions are
+     * compiled again when the output directories change.
+     */
+    private ReloadingClassLoader createReloadingClassLoader(
+            final Set<String> classpath) throws Exception {
+        Set<String> outputDirs = outputDirs();
+        Set<String> stable = new HashSet<String>();
+        List<File> dirs = new ArrayList<File>();
+        for (String e : classpath) {
+            File f = CanonicalPaths.get(new File(e));
+            if (outputDirs.contains(f.getPath())) {
+                dirs.add(f);
+            } else {
+                stable.add(e);
+            }
+        }
+        addYetiCompilerToClasspath(stable);
+        getLog().info("reloading the classes of " + dirs + " when they change");
+        if (preloadDir == null) {
+            return new ReloadingClassLoader(createCompilerClassLoader(stable),
+                    dirs);
+        }
+        return new ReloadingClassLoader(createCompilerClassLoader(stable),
+                dirs, Collections.singletonList(new File(preloadDir, "classes")),
+                new ReloadingClassLoader.Listener() {
+                    public void outputChanged() throws Exception {
+                        if (!compilePreload(classpath)) {
+                            throw new MojoExecutionException(
+                                    "the startup definitions do not compile "
+                                    + "against the changed classes");
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Compiles the definitions of the startup commands into a preload
+     * module (or finds it in the cache) and returns the lines the repl has
+     * to read. The cache is keyed by the commands and the dependencies, the
+     * preload is compiled again when the output directories changed since.
+     * With reload the classes of the preload go to the reloaded child
+     * loader, otherwise they are added to the classpath.
+     */
+    private String prepareCommands(Set<String> classpath) throws Exception {
+        preload = new ReplPreload(commands);
+        if (!preload.hasDefinitions()) {
+            return preload.replInput(null);
+        }
+        Set<String> outputDirs = outputDirs();
+        List<String> dependencies = new ArrayList<String>();
+        for (String e : classpath) {
+            if (!outputDirs.contains(CanonicalPaths.get(new File(e)).getPath())) {
+                dependencies.add(e);
+            }
+        }
+        String key = new Fingerprint().add(commands)
+            .addClasspath(dependencies).toString();
+        preloadModule = "yeti_repl.preload_" + key.substring(0, 16);
+        preloadDir = new File(replCacheDir, key);
+        File classes = new File(preloadDir, "classes");
+        File compiled = new File(preloadDir, "compiled");
+        if (compiled.isFile() && FileUtils.fileRead(compiled, "UTF-8")
+                .equals(outputState())) {
+            getLog().info("using the compiled startup definitions in "
+                    + classes);
+        } else if (compilePreload(classpath)) {
+            getLog().info("compiled " + preload.getNames().size()
+                    + " startup definitions to " + classes);
+        } else {
+            preloadDir = null;
+            return preload.replInput(null);
+        }
+        if (!reload) {
+            classpath.add(classes.getAbsolutePath());
+        }
+        return preload.replInput(preloadModule);
+    }
+
+    /**
+     * Compiles the preload module against the classpath, false if it does
+     * not compile. The compiled marker records the state of the output
+     * directories it was compiled against.
+     */
+    private synchronized boolean compilePreload(Set<String> classpath)
+            throws Exception {
+        File classes = new File(preloadDir, "classes");
+        File compiled = new File(preloadDir, "compiled");
+        String state = outputState();
+        removeOtherPreloads();
+        compiled.delete();
+        FileUtils.deleteDirectory(classes);
+        classes.mkdirs();
+        File source = new File(preloadDir, "preload.yeti");
+        FileUtils.fileWrite(source.getPath(), "UTF-8",
+                preload.moduleSource(preloadModule));
+        try {
+            invokeYeti(new HashSet<String>(classpath),
+                    YetiCompileMojoBase.compileArgs(classes,
+                        Collections.singletonList(source.getPath()),
+                        Collections.<File>emptyList()));
+        } catch (MojoExecutionException ex) {
+            getLog().warn("could not compile the repl startup "
+                    + "definitions, running them from source: "
+                    + ex.getMessage());
+            return false;
+        }
+        FileUtils.fileWrite(compiled.getPath(), "UTF-8", state);
+        return true;
+    }
+
+    /**
+     * Removes the preloads of other commands or dependencies, only the
+     * current one is kept next to the symbol index.
+     */
+    private void removeOtherPreloads() throws IOException {
+        File[] dirs = replCacheDir.listFiles();
+        for (int i = 0; dirs != null && i < dirs.length; i++) {
+            if (dirs[i].isDirectory() && !dirs[i].equals(preloadDir)) {
+                FileUtils.deleteDirectory(dirs[i]);
+            }
+        }
+    }
+
+    /** The fingerprint of the output directories. */
+    private String outputState() {
+        Fingerprint f = new Fingerprint();
+        for (String d : new TreeSet<String>(outputDirs())) {
+            f.addFile(new File(d));
+        }
+        return f.toString();
     }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.StringUtils;
+
+import org_yeti_maven_executions.JavaMainCaller;
+import org_yeti_maven_executions.JavaMainCallerByFork;
+import org_yeti_maven_executions.JavaMainCallerInProcess;
+import org_yeti_maven_executions.MainHelper;
+import org_yeti_maven_executions.SpawnMonitor;
+
+/**
+ * Runs a yeti program (a module with a main) with the runtime classpath
+ * and, while it runs, compiles the changed yeti sources again.
+ *
+ * The program is restarted after each compile. In-process (launcher
+ * "inProcess") its main thread is interrupted and main runs again on a
+ * new classloader of the output directory, while the dependencies stay
+ * loaded (and JIT-warm) in a stable parent loader. The program has to end
+ * its main when interrupted. Forked (launcher "fork") its JVM is stopped
+ * and started again. If the program does not end within stopTimeout the
+ * goal fails instead of starting a second copy next to it.
+ *
+ * @goal run
+ * @requiresDependencyResolution runtime
+ * @execute phase="compile"
+ * @inheritByDefault false
+ * @requiresDirectInvocation true
+ * @executionStrategy once-per-session
+ * @description runs a yeti program and restarts it on changes
+ */
+public class YetiRunMojo extends YetiCompileMojoBase {
+
+    /**
+     * The class of the program module, ie <code>my.server</code>.
+     *
+     * @parameter expression="${yeti.mainModule}"
+     * @required
+     */
+    protected String mainModule;
+
+    /**
+     * The arguments of the program, seperated by whitespace.
+     *
+     * @parameter expression="${yeti.mainArgs}"
+     */
+    protected String mainArgs;
+
+    /**
+     * "inProcess" runs the program in the maven JVM, "fork" in its own
+     * JVM with runJvmArgs.
+     *
+     * @parameter expression="${yeti.launcher}" default-value="inProcess"
+     */
+    protected String launcher = "inProcess";
+
+    /**
+     * The arguments of the forked JVM of the program.
+     *
+     * @parameter
+     */
+    protected String[] runJvmArgs;
+
+    /**
+     * Wheter the sources are compiled again and the program reloaded
+     * (or restarted) when they change.
+     *
+     * @parameter expression="${yeti.watch}" default-value="true"
+     */
+    protected boolean watch = true;
+
+    /**
+     * How often (in ms) the source directories are checked. A change is
+     * compiled when the sources did not change for one more interval.
+     *
+     * @parameter expression="${yeti.watchInterval}" default-value="1000"
+     */
+    protected long watchInterval = 1000;
+
+    /**
+     * How long (in ms) a restart waits for the old program to end.
+     *
+     * @parameter expression="${yeti.stopTimeout}" default-value="10000"
+     */
+    protected long stopTimeout = 10000;
+
+    private ReloadingClassLoader reloading;
+
+    /**
+     * The recompiles are recorded with the compile goal.
+     */
+    @Override
+    protected String getStatsKey() {
+        return YetiCompileMojo.class.getSimpleName();
+    }
+
+    @Override
+    protected void doExecute() throws Exception {
+        boolean fork = "fork".equals(launcher);
+        if (!fork && !"inProcess".equals(launcher)) {
+            throw new MojoExecutionException(
+                    "launcher must be inProcess or fork but is: " + launcher);
+        }
+        String[] args = StringUtils.isEmpty(mainArgs) ? new String[0]
+            : mainArgs.trim().split("\\s+");
+        SpawnMonitor app = start(fork, args);
+        if (!watch) {
+            while (app.isRunning()) {
+                Thread.sleep(watchInterval);
+            }
+            return;
+        }
+
+        String compiled = sourceState();
+        String last = compiled;
+        while (app.isRunning()) {
+            Thread.sleep(watchInterval);
+            String now = sourceState();
+            if (!now.equals(last) || now.equals(compiled)) {
+                last = now;
+                continue;
+            }
+            compiled = now;
+            try {
+                super.doExecute();
+            } catch (MojoExecutionException ex) {
+                getLog().error("compile failed, " + mainModule
+                        + " keeps running the last compiled classes: "
+                        + ex.getMessage());
+                continue;
+            }
+            getLog().info("restarting " + mainModule);
+            stop(app, fork);
+            if (!fork) {
+                reloading.reload();
+            }
+            app = start(fork, args);
+        }
+    }
+
+    /**
+     * Stops the program and waits up to stopTimeout for it to end.
+     */
+    private void stop(SpawnMonitor app, boolean fork) throws Exception {
+        app.stop();
+        long end = System.currentTimeMillis() + stopTimeout;
+        while (app.isRunning() && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        if (app.isRunning()) {
+            throw new MojoExecutionException(mainModule + " did not end "
+                    + "within " + stopTimeout + " ms after it was "
+                    + (fork ? "stopped" : "interrupted")
+                    + ", not starting a second copy next to it");
+        }
+    }
+
+    /**
+     * Starts the program with the runtime classpath, in-process on the
+     * current child loader of the output directory.
+     */
+    @SuppressWarnings("unchecked")
+    private SpawnMonitor start(boolean fork, String[] args) throws Exception {
+        List<String> classpath = project.getRuntimeClasspathElements();
+        JavaMainCaller caller;
+        if (fork) {
+            caller = new JavaMainCallerByFork(this, mainModule,
+                    MainHelper.toMultiPath(classpath), runJvmArgs, args,
+                    forceUseArgFile);
+            getLog().info("starting " + mainModule + " in a forked JVM");
+            return ((JavaMainCallerByFork) caller).start(displayCmd);
+        }
+        if (reloading == null) {
+            reloading = createReloadingClassLoader(classpath);
+        }
+        caller = new JavaMainCallerInProcess(this, mainModule, reloading,
+                null, args);
+        getLog().info("starting " + mainModule + " in-process");
+        return caller.spawn(displayCmd);
+    }
+
+    /**
+     * The dependencies go to a stable loader, the output directory to the
+     * reloaded child.
+     */
+    private ReloadingClassLoader createReloadingClassLoader(
+            List<String> classpath) throws Exception {
+        File out = CanonicalPaths.get(outputDir);
+        List<URL> stable = new ArrayList<URL>();
+        for (String e : classpath) {
+            File f = CanonicalPaths.get(new File(e));
+            if (!f.equals(out)) {
+                stable.add(f.toURI().toURL());
+            }
+        }
+        return new ReloadingClassLoader(
+                new URLClassLoader(stable.toArray(new URL[stable.size()]),
+                    (ClassLoader) null),
+                Collections.singletonList(out));
+    }
+
+    private String sourceState() throws Exception {
+        Fingerprint f = new Fingerprint();
+        for (File dir : getSourceDirectories()) {
+            f.addFile(dir);
+        }
+        return f.toString();
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import org_yeti_maven_model.MavenProjectAdapter;
+
+/**
+ * Runs a yeti script with the current project bound to <code>project</code>
+ * (a org_yeti_maven_model.MavenProjectAdapter). The script is the body of a
+ * function of project, its last expression is its value.
+ *
+ * The compiled script is cached in scriptCacheDir under the hash of the
+ * script, the yeti compiler and the classpath, so running the same script
+ * again only loads its classes.
+ *
+ * @goal script
+ * @requiresDependencyResolution test
+ * @threadSafe
+ * @description runs a yeti script on the project
+ */
+public class YetiScriptMojo extends YetiMojoSupport {
+
+    /**
+     * The inline script, ie
+     * <code>println (project#apply("version"))</code>.
+     *
+     * @parameter expression="${yeti.script}"
+     */
+    protected String script;
+
+    /**
+     * A file with the script, used if script is not set.
+     *
+     * @parameter expression="${yeti.scriptFile}"
+     */
+    protected File scriptFile;
+
+    /**
+     * The directory of the compiled scripts.
+     *
+     * @parameter expression="${project.build.directory}/yeti-scripts"
+     */
+    protected File scriptCacheDir;
+
+    /** Compiled scripts not used for so many days are removed. */
+    private static final int MAX_UNUSED_DAYS = 30;
+
+    /**
+     * The classes the adapter uses in its methods, needed by the compiler
+     * to type the script.
+     */
+    private static final Class<?>[] ADAPTER_CLASSES = {
+        MavenProjectAdapter.class, MavenProject.class, Model.class,
+        Artifact.class, ArtifactFactory.class, ArtifactRepository.class,
+        Xpp3Dom.class
+    };
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doExecute() throws Exception {
+        String body = readScript();
+        Set<String> classpath = new LinkedHashSet<String>();
+        classpath.addAll(project.getCompileClasspathElements());
+        classpath.addAll(project.getRuntimeClasspathElements());
+
+        File classes = compileScript(body, classpath);
+        String module = moduleName(body);
+
+        List<URL> urls = new ArrayList<URL>();
+        urls.add(classes.toURI().toURL());
+        for (String e : classpath) {
+            urls.add(new File(e).toURI().toURL());
+        }
+        //the plugin's loader is the parent so the script gets the same
+        //MavenProjectAdapter class and yeti runtime as this mojo
+        ClassLoader cl = new URLClassLoader(urls.toArray(new URL[urls.size()]),
+                getClass().getClassLoader());
+        ClassLoader oCl = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(cl);
+            Object fun = cl.loadClass(module).getMethod("eval").invoke(null);
+            Method apply = fun.getClass().getMethod("apply", Object.class);
+            Object result = apply.invoke(fun,
+                    new MavenProjectAdapter(project));
+            getLog().debug("script result: " + result);
+        } catch (InvocationTargetException ex) {
+            throw new MojoExecutionException("yeti script failed: "
+                    + ex.getCause(), ex.getCause());
+        } finally {
+            Thread.currentThread().setContextClassLoader(oCl);
+        }
+    }
+
+    private String readScript() throws Exception {
+        if (script != null && script.trim().length() > 0) {
+            return script;
+        }
+        if (scriptFile == null) {
+            throw new MojoExecutionException(
+                    "set the script (-Dyeti.script=...) or the scriptFile "
+                    + "(-Dyeti.scriptFile=...) to run");
+        }
+        if (!scriptFile.isFile()) {
+            throw new MojoExecutionException("The scriptFile "
+                    + scriptFile + " does not exist");
+        }
+        return FileUtils.fileRead(scriptFile.getPath(), "UTF-8");
+    }
+
+    static String moduleName(String body) {
+        return "yeti_script.s_"
+            + new Fingerprint().add(body).toString().substring(0, 16);
+    }
+
+    /**
+     * The source of the script module, its value is the function of
+     * project.
+     */
+    static String moduleSource(String module, String body) {
+        return "module " + module + ";\n\n"
+            + "do p:\n"
+            + "project = p unsafely_as ~org_yeti_maven_model.MavenProjectAdapter;\n"
+            + body.trim() + "\n"
+            + "done\n";
+    }
+
+    /**
+     * Compiles the script unless it is already in the cache and returns the
+     * directory of its classes. The cache is keyed by the script, the
+     * compiler and the dependency jars, the directories on the classpath
+     * (ie target/classes) are not part of the key.
+     */
+    private File compileScript(String body, Set<String> projectClasspath)
+            throws Exception {
+        Set<String> classpath = new LinkedHashSet<String>(projectClasspath);
+        for (Class<?> c : ADAPTER_CLASSES) {
+            classpath.add(classpathEntry(c));
+        }
+        addYetiCompilerToClasspath(classpath);
+
+        String module = moduleName(body);
+        Fingerprint key = new Fingerprint().add(moduleSource(module, body));
+        String compiler = compilerLocation(classpath);
+        if (compiler != null) {
+            key.addFile(new File(compiler));
+        }
+        List<String> jars = new ArrayList<String>();
+        for (String e : classpath) {
+            if (new File(e).isFile()) {
+                jars.add(e);
+            }
+        }
+        key.addClasspath(jars);
+        File scriptDir = new File(scriptCacheDir, module);
+        File dir = new File(scriptDir, key.toString());
+        File classes = new File(dir, "classes");
+        File done = new File(dir, "compiled");
+        removeStale(scriptDir, dir);
+        if (done.exists()) {
+            done.setLastModified(System.currentTimeMillis());
+            getLog().info("using the compiled script in " + classes);
+            return classes;
+        }
+        FileUtils.deleteDirectory(dir);
+        classes.mkdirs();
+        File source = new File(dir, "script.yeti");
+        FileUtils.fileWrite(source.getPath(), "UTF-8",
+                moduleSource(module, body));
+        long t0 = System.currentTimeMillis();
+        invokeYeti(classpath, YetiCompileMojoBase.compileArgs(classes,
+                    Collections.singletonList(source.getPath()),
+                    Collections.<File>emptyList()));
+        done.createNewFile();
+        getLog().info("compiled the script to " + classes + " in "
+                + (System.currentTimeMillis() - t0) + " ms");
+        return classes;
+    }
+
+    /**
+     * Removes the other compiles of this script (for other dependencies or
+     * compilers) and the scripts which were not used for MAX_UNUSED_DAYS.
+     */
+    private void removeStale(File scriptDir, File current) throws IOException {
+        File[] compiles = scriptDir.listFiles();
+        for (int i = 0; compiles != null && i < compiles.length; i++) {
+            if (!compiles[i].equals(current)) {
+                FileUtils.deleteDirectory(compiles[i]);
+            }
+        }
+        long unused = System.currentTimeMillis()
+            - MAX_UNUSED_DAYS * 24L * 60 * 60 * 1000;
+        File[] scripts = scriptCacheDir.listFiles();
+        for (int i = 0; scripts != null && i < scripts.length; i++) {
+            File[] c = scripts[i].listFiles();
+            if (scripts[i].equals(scriptDir) || c == null) {
+                continue;
+            }
+            if (c.length == 0 || new File(c[0], "compiled").lastModified()
+                    < unused) {
+                FileUtils.deleteDirectory(scripts[i]);
+            }
+        }
+    }
+
+    /**
+     * The jar (or directory) of the yeti compiler on the classpath, null if
+     * it is not there.
+     */
+    private String compilerLocation(Set<String> classpath) {
+        URLClassLoader cl = new URLClassLoader(toUrls(classpath), null);
+        URL url = cl.getResource(YETI_COMPILER_CLASS.replace('.', '/')
+                + ".class");
+        if (url == null) {
+            return null;
+        }
+        String s = url.toString();
+        if (s.startsWith("jar:file:") && s.indexOf("!/") > 0) {
+            return new File(s.substring(9, s.indexOf("!/"))).getPath();
+        }
+        return new File(url.getPath()).getPath();
+    }
+
+    private static URL[] toUrls(Set<String> classpath) {
+        URL[] urls = new URL[classpath.size()];
+        int i = 0;
+        for (String e : classpath) {
+            try {
+                urls[i++] = new File(e).toURI().toURL();
+            } catch (MalformedURLException ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        }
+        return urls;
+    }
+
+    private static String classpathEntry(Class<?> c)
+            throws MojoExecutionException {
+        CodeSource cs = c.getProtectionDomain().getCodeSource();
+        if (cs == null || cs.getLocation() == null) {
+            throw new MojoExecutionException("Could not locate the classes of "
+                    + c.getName());
+        }
+        try {
+            return new File(cs.getLocation().toURI()).getPath();
+        } catch (Exception ex) {
+            return new File(cs.getLocation().getPath()).getPath();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Reports the size of the compiled classes per yeti module: the number of
+ * classes, bytes, methods, fields and constant pool entries of the module
+ * class and its closures (module$...), the largest closures and the change
+ * against the previous run. Useful to keep an eye on apk size and the dex
+ * method limit. Only the classes the yeti compiler generated (their source
+ * file is a .yeti) are counted, not the compiled java sources.
+ *
+ * @goal size-report
+ * @threadSafe
+ */
+public class YetiSizeReportMojo extends AbstractMojo {
+
+    private static final String[] MEASURES =
+        {"classes", "bytes", "methods", "fields", "constants"};
+
+    /**
+     * The directory with the compiled classes.
+     *
+     * @parameter expression="${project.build.outputDirectory}"
+     */
+    protected File outputDir;
+
+    /**
+     * The report.
+     *
+     * @parameter expression="${project.build.directory}/yeti-size-report.txt"
+     */
+    protected File reportFile;
+
+    /**
+     * The sizes of the last run, the trend is reported against them. It is
+     * in target, so mvn clean starts the trend anew. Set it to a path
+     * outside of target (and outside of version control) to keep the trend
+     * over clean builds.
+     *
+     * @parameter expression="${yeti.size.trendFile}" default-value="${project.build.directory}/yeti-size.properties"
+     */
+    protected File sizeFile;
+
+    /**
+     * The number of largest closures to report.
+     *
+     * @parameter expression="${yeti.size.closures}" default-value="10"
+     */
+    protected int closures = 10;
+
+    /**
+     * Fails the build if all yeti classes together have more methods (ie to
+     * stay below the dex limit of 65536 with the libraries). 0 is no limit.
+     *
+     * @parameter expression="${yeti.size.maxMethods}" default-value="0"
+     */
+    protected int maxMethods = 0;
+
+    /**
+     * Fails the build if all yeti classes together have more bytes. 0 is no
+     * limit.
+     *
+     * @parameter expression="${yeti.size.maxBytes}" default-value="0"
+     */
+    protected long maxBytes = 0;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (!outputDir.isDirectory()) {
+            getLog().info("no classes in " + outputDir);
+            return;
+        }
+        try {
+            report();
+        } catch (IOException ex) {
+            throw new MojoExecutionException("size report failed: " + ex, ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void report() throws IOException, MojoFailureException {
+        Map<String, long[]> modules = new TreeMap<String, long[]>();
+        List<ClassFileInfo> inner = new ArrayList<ClassFileInfo>();
+        long[] total = new long[MEASURES.length];
+        for (File f : (List<File>) FileUtils.getFiles(outputDir,
+                    "**/*.class", null)) {
+            ClassFileInfo info = ClassFileInfo.read(f);
+            if (info.getSourceFile() == null
+                    || !info.getSourceFile().endsWith(".yeti")) {
+                continue;
+            }
+            String name = info.getName();
+            int dollar = name.indexOf('$');
+            String module = (dollar > 0 ? name.substring(0, dollar) : name)
+                .replace('/', '.');
+            long[] m = modules.get(module);
+            if (m == null) {
+                m = new long[MEASURES.length];
+                modules.put(module, m);
+            }
+            long[] values = {1, info.getSize(), info.getMethodCount(),
+                info.getFieldCount(), info.getConstantPoolCount()};
+            for (int i = 0; i < values.length; i++) {
+                m[i] += values[i];
+                total[i] += values[i];
+            }
+            if (dollar > 0) {
+                inner.add(info);
+            }
+        }
+
+        Properties previous = load(sizeFile);
+        Properties current = new Properties();
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.printf("%-40s %8s %16s %14s %12s %14s%n", "module",
+                "classes", "bytes", "methods", "fields", "constants");
+        for (Map.Entry<String, long[]> e : modules.entrySet()) {
+            line(out, e.getKey(), e.getValue(), previous, current);
+        }
+        line(out, "total", total, previous, current);
+
+        Collections.sort(inner, new Comparator<ClassFileInfo>() {
+            public int compare(ClassFileInfo a, ClassFileInfo b) {
+                return b.getSize() - a.getSize();
+            }
+        });
+        out.printf("%nlargest closures:%n");
+        for (ClassFileInfo c : inner.subList(0,
+                    Math.min(closures, inner.size()))) {
+            out.printf("  %8d bytes %5d methods  %s%n", c.getSize(),
+                    c.getMethodCount(), c.getName().replace('/', '.'));
+        }
+        out.flush();
+
+        FileUtils.fileWrite(reportFile.getPath(), "UTF-8", text.toString());
+        for (String l : text.toString().split("\r?\n")) {
+            getLog().info(l);
+        }
+        save(current, sizeFile);
+
+        if (maxMethods > 0 && total[2] > maxMethods) {
+            throw new MojoFailureException("the classes have " + total[2]
+                    + " methods, more than maxMethods " + maxMethods);
+        }
+        if (maxBytes > 0 && total[1] > maxBytes) {
+            throw new MojoFailureException("the classes have " + total[1]
+                    + " bytes, more than maxBytes " + maxBytes);
+        }
+    }
+
+    private static void line(PrintWriter out, String module, long[] values,
+            Properties previous, Properties current) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-40s %8d", module, values[0]));
+        int[] widths = {16, 14, 12, 14};
+        for (int i = 0; i < MEASURES.length; i++) {
+            String key = module + "." + MEASURES[i];
+            current.setProperty(key, String.valueOf(values[i]));
+            if (i == 0) {
+                continue;
+            }
+            String v = String.valueOf(values[i]);
+            String old = previous.getProperty(key);
+            if (old != null) {
+                long delta = values[i] - Long.parseLong(old);
+                if (delta != 0) {
+                    v += String.format(" (%+d)", delta);
+                }
+            } else if (!previous.isEmpty()) {
+                v += " (new)";
+            }
+            sb.append(String.format(" %" + widths[i - 1] + "s", v));
+        }
+        out.println(sb);
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties p = new Properties();
+        if (file.isFile()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                p.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return p;
+    }
+
+    private static void save(Properties p, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            p.store(out, "yeti:size-report");
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lexical helpers to get information out of yeti sources without compiling
+ * them.
+ */
+public class YetiSources {
+
+    /**
+     * The path of the main class (without .class and separated by /) the
+     * compiler generates for the given yeti or java source. For yeti this is
+     * the name in the module/program declaration, otherwise the path of
+     * the source relative to its source directory.
+     */
+    public static String classPath(File source, List<File> sourceDirs)
+            throws IOException {
+        String name = source.getPath();
+        if (name.endsWith(".yeti")) {
+            String module = moduleName(read(source));
+            if (module != null) {
+                return module.replace('.', '/');
+            }
+        }
+        for (File dir : sourceDirs) {
+            String dirName = dir.getPath() + File.separator;
+            if (name.startsWith(dirName)) {
+                name = name.substring(dirName.length());
+                break;
+            }
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return name.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * The name declared by the leading "module x.y;" or "program x.y;" or
+     * null if the source has none.
+     */
+    public static String moduleName(String source) {
+        Lexer lex = new Lexer(source);
+        String kw = lex.next();
+        if (!"module".equals(kw) && !"program".equals(kw)) {
+            return null;
+        }
+        String name = lex.next();
+        if (name == null || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return null;
+        }
+        return name;
+    }
+
+    /**
+     * The names of the modules the source loads (load x.y).
+     */
+    public static List<String> loads(String source) {
+        List<String> r = new ArrayList<String>();
+        Lexer lex = new Lexer(source);
+        for (String t = lex.next(); t != null; t = lex.next()) {
+            if ("load".equals(t)) {
+                String name = lex.next();
+                if (name != null
+                        && Character.isJavaIdentifierStart(name.charAt(0))
+                        && !r.contains(name)) {
+                    r.add(name);
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * The java classes the source refers to: the imported ones (import
+     * a.B; and import a: B, C;) and the qualified names after ~ and new.
+     * Simple names after ~ and new are resolved through the imports,
+     * others (ie java.lang) are not reported.
+     */
+    public static List<String> javaReferences(String source) {
+        List<String> r = new ArrayList<String>();
+        Map<String, String> imported = new HashMap<String, String>();
+        Lexer lex = new Lexer(source);
+        for (String t = lex.next(); t != null; t = lex.next()) {
+            if ("import".equals(t)) {
+                String name = lex.next();
+                if (name == null
+                        || !Character.isJavaIdentifierStart(name.charAt(0))) {
+                    continue;
+                }
+                String next = lex.next();
+                if (":".equals(next)) {
+                    for (String c = lex.next(); c != null
+                            && !c.equals(";"); c = lex.next()) {
+                        if (Character.isJavaIdentifierStart(c.charAt(0))) {
+                            addImport(name + "." + c, imported, r);
+                        }
+                    }
+                } else {
+                    addImport(name, imported, r);
+                }
+            } else if ("~".equals(t) || "new".equals(t)) {
+                String name = lex.next();
+                if (name == null
+                        || !Character.isJavaIdentifierStart(name.charAt(0))) {
+                    continue;
+                }
+                String c = name.indexOf('.') > 0 ? name : imported.get(name);
+                if (c != null && !r.contains(c)) {
+                    r.add(c);
+                }
+            }
+        }
+        return r;
+    }
+
+    private static void addImport(String name, Map<String, String> imported,
+            List<String> r) {
+        imported.put(name.substring(name.lastIndexOf('.') + 1), name);
+        if (!r.contains(name)) {
+            r.add(name);
+        }
+    }
+
+    /**
+     * The classes out of names (ie the yeti modules of the project) a java
+     * source refers to: by their qualified name, or by their simple name
+     * if they are in the package of the source or in a package it imports
+     * with a wildcard.
+     */
+    public static List<String> referencedClasses(String javaSource,
+            Collection<String> names) {
+        Set<String> tokens = new HashSet<String>();
+        Set<String> packages = new HashSet<String>();
+        packages.add("");
+        Lexer lex = new Lexer(javaSource);
+        for (String t = lex.next(); t != null; t = lex.next()) {
+            if ("package".equals(t) || "import".equals(t)) {
+                String name = lex.next();
+                if (name == null
+                        || !Character.isJavaIdentifierStart(name.charAt(0))) {
+                    continue;
+                }
+                if ("package".equals(t)) {
+                    packages.remove("");
+                    packages.add(name);
+                } else if (".".equals(lex.next()) && "*".equals(lex.next())) {
+                    packages.add(name);
+                }
+                tokens.add(name);
+            } else if (Character.isJavaIdentifierStart(t.charAt(0))) {
+                tokens.add(t);
+            }
+        }
+        List<String> r = new ArrayList<String>();
+        for (String name : names) {
+            int dot = name.lastIndexOf('.');
+            String pkg = dot < 0 ? "" : name.substring(0, dot);
+            if (refersTo(tokens, name) || packages.contains(pkg)
+                    && refersTo(tokens, name.substring(dot + 1))) {
+                r.add(name);
+            }
+        }
+        return r;
+    }
+
+    /** Wheter a token is the name or a member of it (name.x). */
+    private static boolean refersTo(Set<String> tokens, String name) {
+        for (String t : tokens) {
+            if (t.startsWith(name) && (t.length() == name.length()
+                        || t.charAt(name.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The field names of the last struct at the top level of the source,
+     * which is the value of a module whose last expression is a struct
+     * literal ({a = .., b x = ..}).
+     */
+    public static List<String> moduleFields(String source) {
+        List<String> r = new ArrayList<String>();
+        List<String> open = new ArrayList<String>();
+        Lexer lex = new Lexer(source);
+        String prev = null;
+        for (String t = lex.next(); t != null; prev = t, t = lex.next()) {
+            if (t.equals("{") || t.equals("(") || t.equals("[")) {
+                if (t.equals("{") && open.isEmpty()) {
+                    r.clear();
+                }
+                open.add(t);
+            } else if (t.equals("}") || t.equals(")") || t.equals("]")) {
+                if (!open.isEmpty()) {
+                    open.remove(open.size() - 1);
+                }
+            } else if (open.size() == 1 && open.get(0).equals("{")
+                    && ("{".equals(prev) || ",".equals(prev))
+                    && Character.isJavaIdentifierStart(t.charAt(0))
+                    && t.indexOf('.') < 0 && !r.contains(t)) {
+                r.add(t);
+            }
+        }
+        return r;
+    }
+
+    public static String read(File file) throws IOException {
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder sb = new StringBuilder((int) file.length());
+            char[] buf = new char[4096];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                sb.append(buf, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Splits yeti source into tokens. Comments are skipped, dotted names
+     * (a.b.c) are one token, strings are returned with their quotes and
+     * every other character is a token of its own.
+     */
+    static class Lexer {
+        private final String src;
+        private int pos = 0;
+
+        Lexer(String src) {
+            this.src = src;
+        }
+
+        String next() {
+            skipSpaceAndComments();
+            if (pos >= src.length()) {
+                return null;
+            }
+            int start = pos;
+            char c = src.charAt(pos);
+            if (Character.isJavaIdentifierStart(c)) {
+                pos++;
+                while (pos < src.length()) {
+                    c = src.charAt(pos);
+                    if (Character.isJavaIdentifierPart(c) || c == '\'') {
+                        pos++;
+                    } else if (c == '.' && pos + 1 < src.length()
+                            && Character.isJavaIdentifierStart(
+                                src.charAt(pos + 1))) {
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+            } else if (c == '"' || c == '\'') {
+                pos++;
+                while (pos < src.length() && src.charAt(pos) != c) {
+                    if (c == '"' && src.charAt(pos) == '\\') {
+                        pos++;
+                    }
+                    pos++;
+                }
+                pos++;
+            } else {
+                pos++;
+            }
+            return src.substring(start, Math.min(pos, src.length()));
+        }
+
+        private void skipSpaceAndComments() {
+            while (pos < src.length()) {
+                char c = src.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (src.startsWith("//", pos)) {
+                    int nl = src.indexOf('\n', pos);
+                    pos = nl < 0 ? src.length() : nl + 1;
+                } else if (src.startsWith("/*", pos)) {
+                    int depth = 0;
+                    do {
+                        if (src.startsWith("/*", pos)) {
+                            depth++;
+                            pos += 2;
+                        } else if (src.startsWith("*/", pos)) {
+                            depth--;
+                            pos += 2;
+                        } else {
+                            pos++;
+                        }
+                    } while (depth > 0 && pos < src.length());
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @phase test-compile
  * @goal testCompile
  * @requiresDependencyResolution test
+ * @threadSafe
  */
 public class YetiTestCompileMojo extends YetiCompileMojoBase {
 
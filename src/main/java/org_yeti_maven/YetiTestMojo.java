@@ -0,0 +1,353 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+
+import org_yeti_maven_executions.JavaMainCallerByFork;
+import org_yeti_maven_executions.MainHelper;
+import org_yeti_maven_executions.SpawnMonitor;
+import org_yeti_maven_executions.YetiTestRunner;
+
+/**
+ * Runs the yeti test modules in testOutputDir. A test module passes if it
+ * evaluates without exception, if its value is a struct each function
+ * field is a test case which is applied to ().
+ *
+ * The modules run concurrently in-process. They share one classloader of
+ * the dependencies (which stays warm), each module has its own child
+ * loader of the project classes. With forkCount the modules are split in
+ * shards which run in forked JVMs. The reports are written in the format
+ * of surefire.
+ *
+ * @goal test
+ * @phase test
+ * @requiresDependencyResolution test
+ * @threadSafe
+ * @description runs the yeti test modules
+ */
+public class YetiTestMojo extends YetiMojoSupport {
+
+    /**
+     * The directory with the compiled main classes.
+     *
+     * @parameter expression="${project.build.outputDirectory}"
+     */
+    protected File outputDir;
+
+    /**
+     * The directory with the compiled test modules.
+     *
+     * @parameter expression="${project.build.testOutputDirectory}"
+     */
+    protected File testOutputDir;
+
+    /**
+     * The module classes in testOutputDir which are test modules (ant
+     * patterns, case insensitive). Defaults to <code>**&#47;*test*.class</code>.
+     *
+     * @parameter
+     */
+    protected String[] testIncludes;
+
+    /**
+     * The module classes in testOutputDir which are no test modules even if
+     * they match testIncludes (ant patterns).
+     *
+     * @parameter
+     */
+    protected String[] testExcludes;
+
+    /**
+     * Runs only the test modules matching these comma separated patterns
+     * instead of testIncludes, ie <code>-Dyeti.test=foo/*</code>.
+     *
+     * @parameter expression="${yeti.test}"
+     */
+    protected String test;
+
+    /**
+     * The number of modules run concurrently (in each forked JVM). 0 for
+     * the number of processors.
+     *
+     * @parameter expression="${yeti.test.threads}" default-value="0"
+     */
+    protected int threads = 0;
+
+    /**
+     * If greater than 0 the modules are split in this many shards which
+     * run in parallel forked JVMs (with testJvmArgs).
+     *
+     * @parameter expression="${yeti.test.forkCount}" default-value="0"
+     */
+    protected int forkCount = 0;
+
+    /**
+     * The arguments of the forked JVMs of the tests (with forkCount).
+     *
+     * @parameter
+     */
+    protected String[] testJvmArgs;
+
+    /**
+     * Where the TEST-module.xml reports are written.
+     *
+     * @parameter expression="${project.build.directory}/surefire-reports"
+     */
+    protected File reportsDirectory;
+
+    /**
+     * Wheter to skip the yeti tests (like surefire).
+     *
+     * @parameter expression="${skipTests}" default-value="false"
+     */
+    protected boolean skipTests = false;
+
+    /**
+     * Wheter failing tests are only logged instead of failing the build.
+     *
+     * @parameter expression="${maven.test.failure.ignore}" default-value="false"
+     */
+    protected boolean testFailureIgnore = false;
+
+    /**
+     * Runs only the test modules affected by changes since their last
+     * passing run: the test modules whose classes, the project classes
+     * they reach (through the references in the class files), the
+     * resources of the output directories or the dependencies changed.
+     *
+     * @parameter expression="${yeti.test.impact}" default-value="false"
+     */
+    protected boolean impactAnalysis = false;
+
+    /**
+     * The hashes of the test modules at their last passing run. It is in
+     * target, so mvn clean makes all tests run again. Set it to a path
+     * outside of target (and outside of version control) to keep the state
+     * over clean builds.
+     *
+     * @parameter expression="${yeti.test.impactFile}" default-value="${project.build.directory}/yeti-test-impact.properties"
+     */
+    protected File impactFile;
+
+    private static final Pattern SUITE = Pattern.compile(
+            "<testsuite name=\"([^\"]*)\" tests=\"(\\d+)\" "
+            + "failures=\"(\\d+)\" errors=\"(\\d+)\"");
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doExecute() throws Exception {
+        if (skipTests) {
+            getLog().info("Tests are skipped.");
+            return;
+        }
+        List<String> modules = findTestModules();
+        if (modules.isEmpty()) {
+            getLog().info("No yeti test modules in " + testOutputDir);
+            return;
+        }
+        int n = threads > 0 ? threads
+            : Runtime.getRuntime().availableProcessors();
+
+        List<File> projectDirs = new ArrayList<File>();
+        projectDirs.add(testOutputDir.getAbsoluteFile());
+        projectDirs.add(outputDir.getAbsoluteFile());
+        Set<String> dirs = new HashSet<String>();
+        for (File d : projectDirs) {
+            dirs.add(CanonicalPaths.get(d).getPath());
+        }
+        List<String> dependencies = new ArrayList<String>();
+        for (String e : (List<String>) project.getTestClasspathElements()) {
+            if (!dirs.contains(CanonicalPaths.get(new File(e)).getPath())) {
+                dependencies.add(e);
+            }
+        }
+
+        TestImpact impact = null;
+        if (impactAnalysis) {
+            long i0 = System.currentTimeMillis();
+            impact = new TestImpact(projectDirs, dependencies, impactFile);
+            List<String> affected = impact.affected(modules);
+            getLog().info(String.format(
+                        "%d of %d yeti test modules affected by changes (%d ms)",
+                        affected.size(), modules.size(),
+                        System.currentTimeMillis() - i0));
+            modules = affected;
+            if (modules.isEmpty()) {
+                return;
+            }
+        }
+
+        for (String module : modules) {
+            new File(reportsDirectory, "TEST-" + module + ".xml").delete();
+        }
+        long t0 = System.currentTimeMillis();
+        if (forkCount > 0) {
+            runForked(modules, dependencies, projectDirs, n);
+        } else {
+            URL[] urls = new URL[dependencies.size()];
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = new File(dependencies.get(i)).toURI().toURL();
+            }
+            ClassLoader shared = new URLClassLoader(urls,
+                    ClassLoader.getSystemClassLoader());
+            getLog().info(String.format(
+                        "running %d yeti test modules on %d threads",
+                        modules.size(), n));
+            new YetiTestRunner(shared, projectDirs, reportsDirectory)
+                .run(modules, n);
+        }
+        report(modules, System.currentTimeMillis() - t0, impact);
+    }
+
+    /**
+     * The classes of the modules matching the includes, a module class has
+     * a static eval method.
+     */
+    List<String> findTestModules() throws Exception {
+        List<String> r = new ArrayList<String>();
+        if (!testOutputDir.isDirectory()) {
+            return r;
+        }
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(testOutputDir);
+        scanner.setCaseSensitive(false);
+        String[] includes = testIncludes;
+        if (test != null && test.trim().length() > 0) {
+            includes = test.trim().split("\\s*,\\s*");
+            for (int i = 0; i < includes.length; i++) {
+                includes[i] = includes[i].replace('.', '/') + ".class";
+            }
+        } else if (includes == null || includes.length == 0) {
+            includes = new String[] {"**/*test*.class"};
+        }
+        scanner.setIncludes(includes);
+        scanner.setExcludes(testExcludes);
+        scanner.scan();
+        for (String f : scanner.getIncludedFiles()) {
+            if (f.indexOf('$') >= 0 || !f.endsWith(".class")) {
+                continue;
+            }
+            ClassFileInfo info =
+                ClassFileInfo.read(new File(testOutputDir, f));
+            if (info.hasStaticMethod("eval")) {
+                r.add(info.getName().replace('/', '.'));
+            }
+        }
+        Collections.sort(r);
+        return r;
+    }
+
+    /**
+     * Runs the shards in parallel forked JVMs.
+     */
+    private void runForked(List<String> modules, List<String> dependencies,
+            List<File> projectDirs, int n) throws Exception {
+        List<String> classpath = new ArrayList<String>(dependencies);
+        classpath.add(MainHelper.locateJar(YetiTestRunner.class));
+        StringBuilder dirs = new StringBuilder();
+        for (File d : projectDirs) {
+            dirs.append(d.getPath()).append(File.pathSeparator);
+        }
+        int shards = Math.min(forkCount, modules.size());
+        getLog().info(String.format(
+                    "running %d yeti test modules in %d forked JVMs",
+                    modules.size(), shards));
+        List<SpawnMonitor> running = new ArrayList<SpawnMonitor>();
+        for (int s = 0; s < shards; s++) {
+            List<String> args = new ArrayList<String>();
+            args.add(reportsDirectory.getAbsolutePath());
+            args.add(String.valueOf(n));
+            args.add(dirs.toString());
+            for (int i = s; i < modules.size(); i += shards) {
+                args.add(modules.get(i));
+            }
+            JavaMainCallerByFork caller = new JavaMainCallerByFork(this,
+                    YetiTestRunner.class.getName(),
+                    MainHelper.toMultiPath(classpath), testJvmArgs,
+                    args.toArray(new String[args.size()]), forceUseArgFile);
+            caller.redirectToLog();
+            running.add(caller.start(displayCmd));
+        }
+        for (SpawnMonitor m : running) {
+            while (m.isRunning()) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Sums up the reports of the modules and records the passing ones in
+     * impact (if not null).
+     */
+    private void report(List<String> modules, long millis, TestImpact impact)
+            throws Exception {
+        int tests = 0, failures = 0, errors = 0;
+        List<String> failed = new ArrayList<String>();
+        for (String module : modules) {
+            File f = new File(reportsDirectory, "TEST-" + module + ".xml");
+            Matcher m = f.isFile()
+                ? SUITE.matcher(FileUtils.fileRead(f, "UTF-8")) : null;
+            if (m == null || !m.find()) {
+                errors++;
+                failed.add(module + " (no report)");
+                if (impact != null) {
+                    impact.record(module, false);
+                }
+                continue;
+            }
+            tests += Integer.parseInt(m.group(2));
+            int bad = Integer.parseInt(m.group(3))
+                + Integer.parseInt(m.group(4));
+            failures += Integer.parseInt(m.group(3));
+            errors += Integer.parseInt(m.group(4));
+            if (bad > 0) {
+                failed.add(module);
+            }
+            if (impact != null) {
+                impact.record(module, bad == 0);
+            }
+        }
+        if (impact != null) {
+            impact.save();
+        }
+        getLog().info(String.format(
+                    "Tests run: %d, Failures: %d, Errors: %d, Time elapsed: %.3f sec",
+                    tests, failures, errors, millis / 1000.0));
+        if (!failed.isEmpty()) {
+            String msg = "There are test failures in " + failed
+                + ", see " + reportsDirectory;
+            if (testFailureIgnore) {
+                getLog().error(msg);
+            } else {
+                throw new MojoFailureException(msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven_executions;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs a main class in the forked JVM and afterwards writes the heap it
+ * needed to a file: the most heap seen live after a garbage collection, or
+ * the peak heap in use if no collection ran. The JVM runs nothing else, so
+ * the number belongs to the main alone.
+ *
+ * Arguments: the heap file, the main class and its arguments.
+ *
+ * If the main fails with a yeti compile error the JVM exits with
+ * COMPILE_FAILED, so the caller can tell bad sources from a broken run.
+ */
+public class HeapReportingMain {
+
+    /** The exit code of a run which failed with a yeti compile error. */
+    public static final int COMPILE_FAILED = 3;
+
+    private static long liveHeap = 0;
+
+    public static void main(String[] args) throws Exception {
+        Thread sampler = new Thread("heap-sampler") {
+            public void run() {
+                while (!isInterrupted()) {
+                    sample();
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+            }
+        };
+        sampler.setDaemon(true);
+        sampler.start();
+        boolean compileFailed = false;
+        try {
+            MainHelper.runMain(args[1], new ArrayList<String>(
+                        Arrays.asList(args).subList(2, args.length)), null);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause == null || !"yeti.lang.compiler.CompileException"
+                    .equals(cause.getClass().getName())) {
+                throw ex;
+            }
+            System.err.println(cause.getMessage());
+            compileFailed = true;
+        } finally {
+            sampler.interrupt();
+            sample();
+            write(new File(args[0]), measured());
+        }
+        if (compileFailed) {
+            System.exit(COMPILE_FAILED);
+        }
+    }
+
+    private static synchronized void sample() {
+        long live = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage u = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && u != null) {
+                live += u.getUsed();
+            }
+        }
+        liveHeap = Math.max(liveHeap, live);
+    }
+
+    private static synchronized long measured() {
+        if (liveHeap > 0) {
+            return liveHeap;
+        }
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void write(File file, long heap) throws Exception {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(String.valueOf(heap).getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
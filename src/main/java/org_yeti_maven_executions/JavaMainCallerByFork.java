@@ -7,10 +7,13 @@ import java.util.List;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
 import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.ExecuteResultHandler;
 import org.apache.commons.exec.Executor;
 import org.apache.commons.exec.LogOutputStream;
 import org.apache.commons.exec.OS;
+import org.apache.commons.exec.ProcessDestroyer;
 import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.commons.exec.ShutdownHookProcessDestroyer;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoFailureException;
 import org.codehaus.plexus.util.StringUtils;
@@ -53,7 +56,27 @@ public class JavaMainCallerByFork extends JavaMainCallerSupport {
         displayCmd(displayCmd, cmd);
         Executor exec = new DefaultExecutor();
 
-        //err and out are redirected to out
+        setStreamHandler(exec);
+        CommandLine cl = toCommandLine(cmd);
+        try {
+            int exitValue = exec.execute(cl);
+            if (exitValue != 0) {
+                if (throwFailure) {
+                    throw new MojoFailureException("command line returned non-zero value:" + exitValue);
+                }
+                return false;
+            }
+            return true;
+        } catch (ExecuteException exc) {
+            if (throwFailure) {
+                throw exc;
+            }
+            return false;
+        }
+    }
+
+    /** err and out are redirected to out (or the log) */
+    private void setStreamHandler(Executor exec) {
         if (!_redirectToLog) {
             exec.setStreamHandler(new PumpStreamHandler(System.out));
         } else {
@@ -71,26 +94,81 @@ public class JavaMainCallerByFork extends JavaMainCallerSupport {
                 }
             }));
         }
+    }
 
+    private static CommandLine toCommandLine(List<String> cmd) {
         CommandLine cl = new CommandLine(cmd.get(0));
         for (int i = 1; i < cmd.size(); i++) {
             cl.addArgument(cmd.get(i));
         }
-        try {
-            int exitValue = exec.execute(cl);
-            if (exitValue != 0) {
-                if (throwFailure) {
-                    throw new MojoFailureException("command line returned non-zero value:" + exitValue);
+        return cl;
+    }
+
+    /**
+     * Starts the process without waiting for it, its output goes to out
+     * (or the log) like with run. Unlike spawn the process is not started
+     * through a shell, so stop on the monitor stops the java process
+     * itself. The process is also stopped when maven exits.
+     */
+    public SpawnMonitor start(boolean displayCmd) throws Exception {
+        List<String> cmd = buildCommand();
+        displayCmd(displayCmd, cmd);
+        Executor exec = new DefaultExecutor();
+        setStreamHandler(exec);
+        final Process[] process = new Process[1];
+        final ShutdownHookProcessDestroyer onExit =
+            new ShutdownHookProcessDestroyer();
+        exec.setProcessDestroyer(new ProcessDestroyer() {
+            public boolean add(Process p) {
+                synchronized (process) {
+                    process[0] = p;
                 }
-                return false;
+                return onExit.add(p);
             }
-            return true;
-        } catch (ExecuteException exc) {
-            if (throwFailure) {
-                throw exc;
+
+            public boolean remove(Process p) {
+                return onExit.remove(p);
             }
-            return false;
-        }
+
+            public int size() {
+                return onExit.size();
+            }
+        });
+        final boolean[] running = {true};
+        exec.execute(toCommandLine(cmd), new ExecuteResultHandler() {
+            public void onProcessComplete(int exitValue) {
+                finished("exited with " + exitValue);
+            }
+
+            public void onProcessFailed(ExecuteException ex) {
+                finished("failed: " + ex.getMessage());
+            }
+
+            private void finished(String msg) {
+                synchronized (running) {
+                    running[0] = false;
+                }
+                requester.getLog().info(mainClassName + " " + msg);
+            }
+        });
+        return new SpawnMonitor() {
+            public boolean isRunning() throws Exception {
+                synchronized (running) {
+                    return running[0];
+                }
+            }
+
+            public void stop() throws Exception {
+                Process p;
+                synchronized (process) {
+                    p = process[0];
+                }
+                if (p != null) {
+                    p.destroy();
+                    p.waitFor();
+                }
+            }
+        };
     }
 
     public SpawnMonitor spawn(boolean displayCmd) throws Exception {
@@ -125,6 +203,10 @@ public class JavaMainCallerByFork extends JavaMainCallerSupport {
                     return true;
                 }
             }
+
+            public void stop() throws Exception {
+                p.destroy();
+            }
         };
     }
 
@@ -36,6 +36,15 @@ public class JavaMainCallerInProcess extends JavaMainCallerSupport {
         _cl = new URLClassLoader(urls.toArray(new URL[urls.size()]), (ClassLoader)null);
     }
 
+    /**
+     * Runs the main class from the given classloader, which is also the
+     * context classloader of the main thread.
+     */
+    public JavaMainCallerInProcess(AbstractMojo requester,  String mainClassName, ClassLoader cl, String[] jvmArgs, String[] args) throws Exception {
+        super(requester, mainClassName, "", jvmArgs, args);
+        _cl = cl;
+    }
+
 
 
     @Override
@@ -79,6 +88,11 @@ public class JavaMainCallerInProcess extends JavaMainCallerSupport {
             public boolean isRunning() throws Exception {
                 return t.isAlive();
             }
+
+            public void stop() throws Exception {
+                t.interrupt();
+                t.join(1000);
+            }
         };
     }
 
@@ -88,7 +102,13 @@ public class JavaMainCallerInProcess extends JavaMainCallerSupport {
         if(displayCmd) {
             requester.getLog().info("cmd : " + mainClassName + "(" + StringUtils.join(argArray, ",")+")");
         }
-        MainHelper.runMain(mainClassName, args, _cl);
+        ClassLoader oCl = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(_cl);
+            MainHelper.runMain(mainClassName, args, _cl);
+        } finally {
+            Thread.currentThread().setContextClassLoader(oCl);
+        }
     }
 
 
@@ -162,6 +162,36 @@ public class MainHelper {
         mainMethod.invoke(null, new Object[] {argArray});
     }
 
+    /**
+     * Parses a memory size like the -Xmx/-Xss jvm options do ("512k", "16m",
+     * "1g" or plain bytes).
+     *
+     * @return the size in bytes or -1 if size is null or empty
+     */
+    public static long parseSize(String size) {
+        if (StringUtils.isEmpty(size) || size.trim().length() == 0) {
+            return -1;
+        }
+        String s = size.trim().toLowerCase();
+        long factor = 1;
+        char unit = s.charAt(s.length() - 1);
+        if (unit == 'k') {
+            factor = 1024L;
+        } else if (unit == 'm') {
+            factor = 1024L * 1024L;
+        } else if (unit == 'g') {
+            factor = 1024L * 1024L * 1024L;
+        }
+        if (factor != 1) {
+            s = s.substring(0, s.length() - 1);
+        }
+        try {
+            return Long.parseLong(s.trim()) * factor;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Not a valid size: " + size);
+        }
+    }
+
     public static String locateJar(Class<?> c) throws Exception {
         final URL location;
         final String classLocation = c.getName().replace('.', '/') + ".class";
@@ -2,4 +2,7 @@ package org_yeti_maven_executions;
 
 public interface SpawnMonitor {
     public boolean isRunning() throws Exception;
+
+    /** Stops the spawned process (or thread) if it still runs. */
+    public void stop() throws Exception;
 }
@@ -0,0 +1,136 @@
+package org_yeti_maven_executions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Routes System.out and System.err of a thread (and the threads it starts)
+ * line by line to a maven log. Code running in-process (ie the yeti
+ * compiler) writes to the shared System.out, with this the output of
+ * parallel executions does not interleave and ends up in the log of the
+ * execution which produced it. Threads without a log write to the
+ * original streams.
+ *
+ * @author Christian Essl
+ */
+public class ThreadOutput {
+
+    private static final InheritableThreadLocal<Log> logs =
+        new InheritableThreadLocal<Log>();
+    /** set while a line is logged, the log may print to System.out itself */
+    private static final ThreadLocal<Boolean> logging =
+        new ThreadLocal<Boolean>();
+
+    private static Router out;
+    private static Router err;
+
+    /**
+     * Routes the output of the current thread to log until stop is
+     * called.
+     */
+    public static void start(Log log) {
+        install();
+        logs.set(log);
+    }
+
+    public static void stop() {
+        out.flushLine();
+        err.flushLine();
+        logs.remove();
+    }
+
+    /** The log of the current thread, null while it logs a line. */
+    private static Log current() {
+        return logging.get() == null ? logs.get() : null;
+    }
+
+    private static synchronized void install() {
+        if (out != null) {
+            return;
+        }
+        out = new Router(System.out, false);
+        err = new Router(System.err, true);
+        System.setOut(new PrintStream(out, true));
+        System.setErr(new PrintStream(err, true));
+    }
+
+    private static class Router extends OutputStream {
+        private final PrintStream original;
+        private final boolean err;
+        private final ThreadLocal<ByteArrayOutputStream> lines =
+            new ThreadLocal<ByteArrayOutputStream>() {
+                protected ByteArrayOutputStream initialValue() {
+                    return new ByteArrayOutputStream();
+                }
+            };
+
+        Router(PrintStream original, boolean err) {
+            this.original = original;
+            this.err = err;
+        }
+
+        public void write(int b) throws IOException {
+            Log log = current();
+            if (log == null) {
+                original.write(b);
+                return;
+            }
+            ByteArrayOutputStream line = lines.get();
+            if (b == '\n') {
+                String l = line.toString();
+                line.reset();
+                log(log, l);
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (current() == null) {
+                original.write(b, off, len);
+                return;
+            }
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        void flushLine() {
+            Log log = current();
+            ByteArrayOutputStream line = lines.get();
+            String l = line.toString();
+            line.reset();
+            if (log != null && l.length() > 0) {
+                log(log, l);
+            }
+        }
+
+        public void flush() throws IOException {
+            if (current() == null) {
+                original.flush();
+            }
+        }
+
+        /**
+         * Logs stdout lines at info and stderr lines at warn. The log
+         * itself may print to System.out/err, that goes to the original
+         * streams.
+         */
+        private void log(Log log, String line) {
+            logging.set(Boolean.TRUE);
+            try {
+                if (err) {
+                    log.warn(line);
+                } else {
+                    log.info(line);
+                }
+            } finally {
+                logging.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package org_yeti_maven_executions;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs yeti test modules and writes a surefire compatible report for each
+ * of them. A test module passes if it evaluates without exception. If its
+ * value is a struct, each function field is a test case of its own and is
+ * applied to ().
+ *
+ * The modules run concurrently on a pool of threads. They share the
+ * classloader of the dependencies, each module gets its own child loader
+ * of the project classes so the module state is not shared.
+ *
+ * This class runs without other dependencies than the jre (and yeti on
+ * the classpath of the tests), in a forked JVM through main.
+ *
+ * @author Christian Essl
+ */
+public class YetiTestRunner {
+
+    /** The outcome of a test module. */
+    public static class Result {
+        public final String module;
+        public int tests;
+        public int failures;
+        public int errors;
+        public long millis;
+        /** the failed test cases with their message */
+        public final List<String> failed = new ArrayList<String>();
+        final StringBuilder cases = new StringBuilder();
+
+        Result(String module) {
+            this.module = module;
+        }
+    }
+
+    private final ClassLoader dependencies;
+    private final URL[] projectClasses;
+    private final File reportsDir;
+
+    /**
+     * @param dependencies the shared loader of the dependencies
+     * @param projectDirs the (test) output directories, loaded per module
+     * @param reportsDir where the TEST-module.xml reports go
+     */
+    public YetiTestRunner(ClassLoader dependencies, List<File> projectDirs,
+            File reportsDir) {
+        this.dependencies = dependencies;
+        this.reportsDir = reportsDir;
+        projectClasses = new URL[projectDirs.size()];
+        for (int i = 0; i < projectClasses.length; i++) {
+            try {
+                projectClasses[i] = projectDirs.get(i).toURI().toURL();
+            } catch (MalformedURLException ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        }
+    }
+
+    /**
+     * Runs the modules on threads threads, the results are in the order
+     * of the modules.
+     */
+    public List<Result> run(List<String> modules, int threads)
+            throws Exception {
+        reportsDir.mkdirs();
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threads, modules.size())));
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (final String module : modules) {
+                futures.add(pool.submit(new Callable<Result>() {
+                    public Result call() throws Exception {
+                        Result r = runModule(module);
+                        writeReport(r);
+                        return r;
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<Result>();
+            for (Future<Result> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Result runModule(String module) {
+        Result r = new Result(module);
+        long t0 = System.currentTimeMillis();
+        ClassLoader cl = new URLClassLoader(projectClasses, dependencies);
+        Thread thread = Thread.currentThread();
+        ClassLoader oCl = thread.getContextClassLoader();
+        thread.setContextClassLoader(cl);
+        try {
+            long c0 = System.currentTimeMillis();
+            Object value;
+            try {
+                Method eval = cl.loadClass(module).getMethod("eval");
+                value = eval.invoke(null);
+            } catch (Throwable ex) {
+                testCase(r, "eval", c0, cause(ex));
+                return r;
+            }
+            if (!runStruct(r, cl, value)) {
+                testCase(r, "eval", c0, null);
+            }
+        } finally {
+            thread.setContextClassLoader(oCl);
+            r.millis = System.currentTimeMillis() - t0;
+        }
+        return r;
+    }
+
+    /**
+     * Runs the function fields of a struct value as test cases, false if
+     * the value has none.
+     */
+    private boolean runStruct(Result r, ClassLoader cl, Object value) {
+        Class<?> struct;
+        Class<?> fun;
+        try {
+            struct = cl.loadClass("yeti.lang.Struct");
+            fun = cl.loadClass("yeti.lang.Fun");
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+        if (!struct.isInstance(value)) {
+            return false;
+        }
+        boolean any = false;
+        try {
+            int count = ((Integer) struct.getMethod("count")
+                    .invoke(value)).intValue();
+            Method name = struct.getMethod("name", int.class);
+            Method get = struct.getMethod("get", int.class);
+            Method apply = fun.getMethod("apply", Object.class);
+            for (int i = 0; i < count; i++) {
+                Object f = get.invoke(value, i);
+                if (!fun.isInstance(f)) {
+                    continue;
+                }
+                any = true;
+                long c0 = System.currentTimeMillis();
+                Throwable failure = null;
+                try {
+                    apply.invoke(f, (Object) null);
+                } catch (Throwable ex) {
+                    failure = cause(ex);
+                }
+                testCase(r, (String) name.invoke(value, i), c0, failure);
+            }
+        } catch (Exception ex) {
+            testCase(r, "struct", System.currentTimeMillis(), ex);
+            return true;
+        }
+        return any;
+    }
+
+    private static Throwable cause(Throwable ex) {
+        while (ex instanceof InvocationTargetException
+                && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+
+    /** yeti failWith and assertion errors are failures, the rest errors */
+    private static boolean isFailure(Throwable ex) {
+        return ex instanceof AssertionError
+            || ex.getClass().getName().equals("yeti.lang.FailureException");
+    }
+
+    private static void testCase(Result r, String name, long start,
+            Throwable failure) {
+        r.tests++;
+        double time = (System.currentTimeMillis() - start) / 1000.0;
+        r.cases.append("  <testcase classname=\"").append(xml(r.module))
+            .append("\" name=\"").append(xml(name))
+            .append("\" time=\"").append(time).append('"');
+        if (failure == null) {
+            r.cases.append("/>\n");
+            return;
+        }
+        String kind;
+        if (isFailure(failure)) {
+            r.failures++;
+            kind = "failure";
+        } else {
+            r.errors++;
+            kind = "error";
+        }
+        r.failed.add(r.module + "." + name + ": " + failure);
+        StringWriter trace = new StringWriter();
+        failure.printStackTrace(new PrintWriter(trace));
+        r.cases.append(">\n    <").append(kind).append(" message=\"")
+            .append(xml(String.valueOf(failure.getMessage())))
+            .append("\" type=\"").append(xml(failure.getClass().getName()))
+            .append("\">").append(xml(trace.toString()))
+            .append("</").append(kind).append(">\n  </testcase>\n");
+    }
+
+    private void writeReport(Result r) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(
+                    new File(reportsDir, "TEST-" + r.module + ".xml")),
+                "UTF-8");
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<testsuite name=\"" + xml(r.module)
+                    + "\" tests=\"" + r.tests
+                    + "\" failures=\"" + r.failures
+                    + "\" errors=\"" + r.errors
+                    + "\" skipped=\"0\" time=\"" + (r.millis / 1000.0)
+                    + "\">\n");
+            out.write(r.cases.toString());
+            out.write("</testsuite>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    static String xml(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '<': sb.append("&lt;"); break;
+            case '>': sb.append("&gt;"); break;
+            case '&': sb.append("&amp;"); break;
+            case '"': sb.append("&quot;"); break;
+            default:
+                if (c < 0x20 && c != '\n' && c != '\r' && c != '\t') {
+                    sb.append(' ');
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Runs a shard of test modules in a forked JVM, the dependencies are on
+     * the classpath of the JVM.
+     *
+     * Arguments: reportsDir threads projectDirs(path separated) module...
+     * Exits with 1 if a test failed.
+     */
+    public static void main(String[] args) {
+        try {
+            List<File> dirs = new ArrayList<File>();
+            for (String d : args[2].split(File.pathSeparator)) {
+                if (d.length() > 0) {
+                    dirs.add(new File(d));
+                }
+            }
+            YetiTestRunner runner = new YetiTestRunner(
+                    YetiTestRunner.class.getClassLoader(), dirs,
+                    new File(args[0]));
+            List<String> modules =
+                Arrays.asList(args).subList(3, args.length);
+            boolean ok = true;
+            for (Result r : runner.run(modules, Integer.parseInt(args[1]))) {
+                ok &= r.failures == 0 && r.errors == 0;
+                System.out.println(r.module + ": " + r.tests + " tests, "
+                        + r.failures + " failures, " + r.errors + " errors");
+            }
+            System.exit(ok ? 0 : 1);
+        } catch (Throwable t) {
+            t.printStackTrace();
+            System.exit(2);
+        }
+    }
+}
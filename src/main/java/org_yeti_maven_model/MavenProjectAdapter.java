@@ -3,6 +3,7 @@ package org_yeti_maven_model;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -40,6 +41,73 @@ import org.codehaus.plexus.util.xml.Xpp3Dom;
 @SuppressWarnings("unchecked")
 public class MavenProjectAdapter {
 
+    //the "standard" properties of apply and update
+    private static final int BUILD_DIRECTORY = 1;
+    private static final int OUTPUT_DIRECTORY = 2;
+    private static final int ARTIFACT_ID = 3;
+    private static final int BASEDIR = 4;
+    private static final int DEFAULT_GOAL = 5;
+    private static final int FINAL_NAME = 6;
+    private static final int SCRIPT_SOURCE_DIRECTORY = 7;
+    private static final int SOURCE_DIRECTORY = 8;
+    private static final int TEST_OUTPUT_DIRECTORY = 9;
+    private static final int TEST_SOURCE_DIRECTORY = 10;
+    private static final int DIRECTORY = 11;
+    private static final int POM = 12;
+    private static final int GROUP_ID = 13;
+    private static final int ID = 14;
+    private static final int INCEPTION_YEAR = 15;
+    private static final int NAME = 16;
+    private static final int PACKAGING = 17;
+    private static final int URL = 18;
+    private static final int VERSION = 19;
+
+    /** key (and its aliases) -> property */
+    private static final Map<String, Integer> PROPERTIES =
+        new HashMap<String, Integer>();
+
+    private static void alias(int p, String... keys) {
+        for (String key : keys) {
+            PROPERTIES.put(key, Integer.valueOf(p));
+        }
+    }
+
+    static {
+        alias(BUILD_DIRECTORY, "build.directory",
+                "project.build.directory", "buildDirectory",
+                "project.buildDirectory");
+        alias(OUTPUT_DIRECTORY, "outputDirectory",
+                "project.outputDirectory", "output.directory",
+                "project.output.directory");
+        alias(ARTIFACT_ID, "artifactId", "project.artifactId");
+        alias(BASEDIR, "basedir", "project.basedir");
+        alias(DEFAULT_GOAL, "defaultGoal", "project.defaultGoal");
+        alias(FINAL_NAME, "finalName", "project.finalName");
+        alias(SCRIPT_SOURCE_DIRECTORY, "scriptSourceDirectory",
+                "project.scriptSourceDirectory", "script.source.directory",
+                "project.script.source.directory");
+        alias(SOURCE_DIRECTORY, "source.directory",
+                "project.source.directory", "sourceDirectory",
+                "project.sourceDirectory");
+        alias(TEST_OUTPUT_DIRECTORY, "test.output.directory",
+                "project.test.output.directory", "testOutputDirectory",
+                "project.testOutputDirectory");
+        alias(TEST_SOURCE_DIRECTORY, "test.source.directory",
+                "project.test.source.directory", "testSourceDirectory",
+                "project.testSourceDirectory");
+        alias(DIRECTORY, "directory", "project.directory");
+        alias(POM, "pom");
+        alias(GROUP_ID, "groupId", "project.groupId");
+        alias(ID, "id", "project.id");
+        alias(INCEPTION_YEAR, "inception", "project.inception",
+                "inceptionYear", "project.inceptionYear", "inception.year",
+                "project.inception.year");
+        alias(NAME, "name", "project.name");
+        alias(PACKAGING, "packaging", "project.packaging");
+        alias(URL, "url", "project.url");
+        alias(VERSION, "version", "project.version");
+    }
+
     final MavenProject wrapped;
 
     public MavenProjectAdapter(MavenProject project) {
@@ -290,73 +358,50 @@ public class MavenProjectAdapter {
         if (System.getenv(key) != null) {
             return System.getenv(key);
         }
-        if (key.equals("build.directory")
-                || key.equals("project.build.directory")
-                || key.equals("buildDirectory")
-                || key.equals("project.buildDirectory")) {
-            return getBuild().getDirectory();
+        Integer p = PROPERTIES.get(key);
+        if (p == null) {
+            return wrapped.getProperties().getProperty(key);
         }
-        if (key.equals("outputDirectory")
-                || key.equals("project.outputDirectory")
-                || key.equals("output.directory")
-                || key.equals("project.output.directory"))
+        switch (p.intValue()) {
+        case BUILD_DIRECTORY:
+            return getBuild().getDirectory();
+        case OUTPUT_DIRECTORY:
             return getBuild().getOutputDirectory();
-
-        if (key.equals("artifactId") || key.equals("project.artifactId")) {
+        case ARTIFACT_ID:
             return getArtifactId();
-        }
-
-        if (key.equals("basedir") || key.equals("project.basedir"))
+        case BASEDIR:
             return getBasedir().getAbsolutePath();
-
-        if (key.equals("defaultGoal") || key.equals("project.defaultGoal"))
+        case DEFAULT_GOAL:
             return getBuild().getDefaultGoal();
-
-        if (key.equals("finalName") || key.equals("project.finalName"))
+        case FINAL_NAME:
             return getBuild().getFinalName();
-        if (key.equals("scriptSourceDirectory")
-                || key.equals("project.scriptSourceDirectory")
-                || key.equals("script.source.directory")
-                || key.equals("project.script.source.directory"))
+        case SCRIPT_SOURCE_DIRECTORY:
             return getBuild().getScriptSourceDirectory();
-        if (key.equals("source.directory")
-                || key.equals("project.source.directory")
-                || key.equals("sourceDirectory")
-                || key.equals("project.sourceDirectory"))
+        case SOURCE_DIRECTORY:
             return getBuild().getSourceDirectory();
-        if (key.equals("test.output.directory")
-                || key.equals("project.test.output.directory")
-                || key.equals("testOutputDirectory")
-                || key.equals("project.testOutputDirectory"))
+        case TEST_OUTPUT_DIRECTORY:
             return getBuild().getTestOutputDirectory();
-        if (key.equals("test.source.directory")
-                || key.equals("project.test.source.directory")
-                || key.equals("testSourceDirectory")
-                || key.equals("project.testSourceDirectory"))
+        case TEST_SOURCE_DIRECTORY:
             return getBuild().getTestSourceDirectory();
-        if (key.equals("directory") || key.equals("project.directory"))
+        case DIRECTORY:
             return getDescription();
-        if (key.equals("pom"))
+        case POM:
             return getFile().getAbsolutePath();
-        if (key.equals("groupId") || key.equals("project.groupId"))
+        case GROUP_ID:
             return getGroupId();
-        if (key.equals("id") || key.equals("project.id"))
+        case ID:
             return getId();
-        if (key.equals("inception") || key.equals("project.inception")
-                || key.equals("inceptionYear")
-                || key.equals("project.inceptionYear")
-                || key.equals("inception.year")
-                || key.equals("project.inception.year"))
+        case INCEPTION_YEAR:
             return getInceptionYear();
-        if (key.equals("name") || key.equals("project.name"))
+        case NAME:
             return getName();
-        if (key.equals("packaging") || key.equals("project.packaging"))
+        case PACKAGING:
             return getModel().getPackaging();
-        if (key.equals("url") || key.equals("project.url"))
+        case URL:
             return getModel().getUrl();
-        if (key.equals("version") || key.equals("project.version"))
+        case VERSION:
             return getModel().getVersion();
-
+        }
         return wrapped.getProperties().getProperty(key);
     }
 
@@ -369,64 +414,65 @@ public class MavenProjectAdapter {
     }
 
     public void update(String key, String value) {
-        if (key.equals("build.directory")
-                || key.equals("project.build.directory")
-                || key.equals("buildDirectory")
-                || key.equals("project.buildDirectory")) {
+        Integer p = PROPERTIES.get(key);
+        if (p == null) {
+            wrapped.getProperties().setProperty(key, value);
+            return;
+        }
+        switch (p.intValue()) {
+        case BUILD_DIRECTORY:
             getBuild().setDirectory(value);
-        } else if (key.equals("outputDirectory")
-                || key.equals("project.outputDirectory")
-                || key.equals("output.directory")
-                || key.equals("project.output.directory")) {
+            break;
+        case OUTPUT_DIRECTORY:
             getBuild().setOutputDirectory(value);
-        } else if (key.equals("artifactId") || key.equals("project.artifactId")) {
+            break;
+        case ARTIFACT_ID:
             setArtifactId(value);
-        } else if (key.equals("defaultGoal")
-                || key.equals("project.defaultGoal")) {
+            break;
+        case DEFAULT_GOAL:
             getBuild().setDefaultGoal(value);
-        } else if (key.equals("finalName") || key.equals("project.finalName")) {
+            break;
+        case FINAL_NAME:
             getBuild().setFinalName(value);
-        } else if (key.equals("scriptSourceDirectory")
-                || key.equals("project.scriptSourceDirectory")
-                || key.equals("script.source.directory")
-                || key.equals("project.script.source.directory")) {
+            break;
+        case SCRIPT_SOURCE_DIRECTORY:
             getBuild().setScriptSourceDirectory(value);
-        } else if (key.equals("source.directory")
-                || key.equals("project.source.directory")
-                || key.equals("sourceDirectory")
-                || key.equals("project.sourceDirectory")) {
+            break;
+        case SOURCE_DIRECTORY:
             getBuild().setSourceDirectory(value);
-        } else if (key.equals("test.output.directory")
-                || key.equals("project.test.output.directory")
-                || key.equals("testOutputDirectory")
-                || key.equals("project.testOutputDirectory")) {
+            break;
+        case TEST_OUTPUT_DIRECTORY:
             getBuild().setTestOutputDirectory(value);
-        } else if (key.equals("test.source.directory")
-                || key.equals("project.test.source.directory")
-                || key.equals("testSourceDirectory")
-                || key.equals("project.testSourceDirectory")) {
+            break;
+        case TEST_SOURCE_DIRECTORY:
             getBuild().setTestSourceDirectory(value);
-        } else if (key.equals("directory") || key.equals("project.directory")) {
+            break;
+        case DIRECTORY:
             setDescription(value);
-        } else if (key.equals("pom")) {
+            break;
+        case POM:
             setFile(new File(value));
-        } else if (key.equals("groupId") || key.equals("project.groupId")) {
+            break;
+        case GROUP_ID:
             setGroupId(value);
-        } else if (key.equals("inception") || key.equals("project.inception")
-                || key.equals("inceptionYear")
-                || key.equals("project.inceptionYear")
-                || key.equals("inception.year")
-                || key.equals("project.inception.year")) {
+            break;
+        case INCEPTION_YEAR:
             setInceptionYear(value);
-        } else if (key.equals("name") || key.equals("project.name")) {
+            break;
+        case NAME:
             setName(value);
-        } else if (key.equals("packaging") || key.equals("project.packaging")) {
+            break;
+        case PACKAGING:
             getModel().setPackaging(value);
-        } else if (key.equals("url") || key.equals("project.url")) {
+            break;
+        case URL:
             getModel().setUrl(value);
-        } else if (key.equals("version") || key.equals("project.version")) {
+            break;
+        case VERSION:
             getModel().setVersion(value);
-        } else {
+            break;
+        default:
+            //basedir and id are read only
             wrapped.getProperties().setProperty(key, value);
         }
     }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class ClassFileInfoTest {
+
+    /** The class the tests read, its members are counted. */
+    static class Sample implements Runnable {
+        static final long BIG = 1L << 40;
+        static final double RATIO = 1.5;
+        static int counter;
+        File file;
+        Map<String, Integer> map;
+
+        public static Sample create(Set<String> names) {
+            return null;
+        }
+
+        public void run() {
+            counter += new StringBuilder().length();
+        }
+
+        long[] sizes(Pattern[] patterns) {
+            return null;
+        }
+    }
+
+    private static byte[] bytes(Class<?> c) throws IOException {
+        String name = c.getName();
+        InputStream in = c.getResourceAsStream("/"
+                + name.replace('.', '/') + ".class");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int n = in.read(buf); n > 0; n = in.read(buf)) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static ClassFileInfo read(byte[] bytes) throws IOException {
+        return ClassFileInfo.read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void members() throws IOException {
+        byte[] bytes = bytes(Sample.class);
+        ClassFileInfo info = read(bytes);
+        assertEquals("org_yeti_maven/ClassFileInfoTest$Sample",
+                info.getName());
+        assertEquals("java/lang/Object", info.getSuperName());
+        assertEquals("ClassFileInfoTest.java", info.getSourceFile());
+        assertEquals(bytes.length, info.getSize());
+        assertTrue(info.getConstantPoolCount() > 10);
+        assertEquals(5, info.getFieldCount());
+        //<init>, create, run and sizes
+        assertEquals(4, info.getMethodCount());
+        assertTrue(info.hasStaticMethod("create"));
+        assertFalse(info.hasStaticMethod("run"));
+        assertFalse(info.hasStaticMethod("sizes"));
+    }
+
+    @Test
+    public void references() throws IOException {
+        Set<String> refs = read(bytes(Sample.class)).getReferences();
+        assertTrue(refs.toString(), refs.containsAll(Arrays.asList(
+                        "java/lang/Object", "java/lang/Runnable",
+                        "java/io/File", "java/util/Map", "java/util/Set",
+                        "java/lang/StringBuilder", "java/util/regex/Pattern",
+                        "org_yeti_maven/ClassFileInfoTest")));
+        assertFalse(refs.contains("org_yeti_maven/ClassFileInfoTest$Sample"));
+        //type arguments are only in the signatures
+        assertFalse(refs.contains("java/lang/Integer"));
+    }
+
+    @Test
+    public void classOfTheRuntime() throws IOException {
+        //a current class file with invokedynamic and the newer constants
+        ClassFileInfo info = read(bytes(String.class));
+        assertEquals("java/lang/String", info.getName());
+        assertEquals("String.java", info.getSourceFile());
+        assertTrue(info.hasStaticMethod("valueOf"));
+        assertFalse(info.hasStaticMethod("length"));
+        assertTrue(info.getReferences().contains("java/lang/StringBuilder"));
+    }
+
+    @Test(expected = IOException.class)
+    public void notAClassFile() throws IOException {
+        read("not a class".getBytes("UTF-8"));
+    }
+}
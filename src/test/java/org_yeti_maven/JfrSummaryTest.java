@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JfrSummaryTest {
+
+    /**
+     * jfr-print.json is the output of "jfr print --json --events ..." of a
+     * JDK 17 recording, trimmed to a few events. Two samples have a yeti
+     * compiler frame.
+     */
+    private String summary() throws IOException {
+        JfrSummary s = new JfrSummary();
+        Reader in = new InputStreamReader(getClass()
+                .getResourceAsStream("jfr-print.json"), "UTF-8");
+        try {
+            s.read(in);
+        } finally {
+            in.close();
+        }
+        StringWriter out = new StringWriter();
+        s.write(new PrintWriter(out), 3);
+        return out.toString();
+    }
+
+    private static void assertContains(String text, String part) {
+        assertTrue(part + " not in:\n" + text, text.contains(part));
+    }
+
+    @Test
+    public void summaryOfCapturedRecording() throws IOException {
+        String s = summary();
+        assertContains(s, "Top methods (3 execution samples):");
+        assertContains(s, "33.3%       1  java.nio.file.Files.readAllLines");
+        assertContains(s, "66.7%       2  yeti.lang.compiler.Parser.parse");
+        assertContains(s, "4.0 MB  [B");
+        assertContains(s, "3.0 MB  java.nio.HeapByteBuffer.<init>");
+        assertContains(s, "GC pauses: 2 collections, 20.0 ms paused, "
+                + "longest 12.5 ms");
+        assertContains(s, "DefNew                   2 collections       20.0 ms");
+        assertContains(s, "read      2.0 MB    60500.0 ms");
+        assertContains(s, "write     4.0 MB       12.0 ms");
+    }
+
+    @Test
+    public void parseDuration() {
+        assertEquals(12500000L, JfrSummary.parseDuration("PT0.0125S"));
+        assertEquals(3723000000000L, JfrSummary.parseDuration("PT1H2M3S"));
+        assertEquals(0L, JfrSummary.parseDuration("12 ms"));
+        assertEquals(0L, JfrSummary.parseDuration(null));
+    }
+
+    @Test
+    public void jsonValues() throws IOException {
+        JsonReader json = new JsonReader(new StringReader(
+                    "{\"a\": [1, -2.5e1, true, null], \"b\\/c\": \"x\\u0041\\n\"}"));
+        json.beginObject();
+        assertEquals("a", json.nextName());
+        List<Object> expected = Arrays.<Object>asList(1L, -25.0, true, null);
+        assertEquals(expected, json.readValue());
+        assertTrue(json.hasNext());
+        assertEquals("b/c", json.nextName());
+        assertEquals("xA\n", json.readValue());
+        assertTrue(!json.hasNext());
+        json.endObject();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModuleGraphTest {
+
+    private File dir;
+    private File cache;
+    private List<String> sources;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("modulegraph", "");
+        dir.delete();
+        dir.mkdirs();
+        cache = new File(dir, "deps.cache");
+        sources = new ArrayList<String>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private void source(String module, String text) throws IOException {
+        File f = new File(dir, module.replace('.', '/') + ".yeti");
+        f.getParentFile().mkdirs();
+        FileUtils.fileWrite(f.getPath(), "UTF-8",
+                "module " + module + ";\n" + text);
+        sources.add(f.getPath());
+    }
+
+    private ModuleGraph build() throws IOException {
+        return ModuleGraph.build(sources, Collections.singletonList(dir),
+                cache);
+    }
+
+    @Test
+    public void cycles() throws IOException {
+        source("a", "load b; 1");
+        source("b", "load c; 2");
+        source("c", "load a; 3");
+        source("d", "load a; load java.util; 4");
+        ModuleGraph g = build();
+        assertEquals(4, g.size());
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b", "c")),
+                g.cycles());
+    }
+
+    @Test
+    public void criticalPathFollowsTheBiggestSources() throws IOException {
+        source("base", "1");
+        source("small", "load base; 2");
+        source("big", "load base; /* " + new String(new char[1000])
+                .replace('\0', 'x') + " */ 3");
+        source("top", "load small; load big; 4");
+        ModuleGraph g = build();
+        assertTrue(g.cycles().isEmpty());
+        assertEquals(Arrays.asList("base", "big", "top"), g.criticalPath());
+    }
+
+    @Test
+    public void cacheRoundTrip() throws IOException {
+        source("a", "import java.io.File; load b; new File('x')");
+        source("b", "~java.util.ArrayList#new()");
+        ModuleGraph first = build();
+        assertEquals(2, first.getScanned());
+        assertTrue(cache.isFile());
+
+        ModuleGraph second = build();
+        assertEquals(0, second.getScanned());
+        assertEquals(2, second.size());
+
+        File json1 = new File(dir, "1.json");
+        File json2 = new File(dir, "2.json");
+        first.writeJson(json1);
+        second.writeJson(json2);
+        assertEquals(FileUtils.fileRead(json1, "UTF-8"),
+                FileUtils.fileRead(json2, "UTF-8"));
+        assertTrue(FileUtils.fileRead(json2, "UTF-8").contains(
+                    "\"classes\": [\"java.io.File\"]"));
+    }
+
+    @Test
+    public void changedSourceIsScannedAgain() throws IOException {
+        source("a", "1");
+        source("b", "2");
+        build();
+        FileUtils.fileWrite(sources.get(0), "UTF-8", "module a;\nload b; 3");
+        ModuleGraph g = build();
+        assertEquals(1, g.getScanned());
+        assertEquals(Arrays.asList("b", "a"), g.criticalPath());
+    }
+}
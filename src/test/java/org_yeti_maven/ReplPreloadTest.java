@@ -0,0 +1,46 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ReplPreloadTest {
+
+    private static final String COMMANDS = "load a.b;; sq x = x * x;;"
+        + " println (sq 2);; twice f x = f (f x);; import java.io.File";
+
+    @Test
+    public void preloadEndsAtTheFirstExpression() {
+        ReplPreload p = new ReplPreload(COMMANDS);
+        assertEquals(Arrays.asList("sq"), p.getNames());
+        assertEquals("module m;\n\nload a.b;\nsq x = x * x;\n\n"
+                + "{\n    sq = sq\n}\n", p.moduleSource("m"));
+        assertEquals("load a.b;\nload m;\nprintln (sq 2);\n"
+                + "twice f x = f (f x);\nimport java.io.File;\n",
+                p.replInput("m"));
+    }
+
+    @Test
+    public void withoutModuleCommandsKeepTheirOrder() {
+        assertEquals("load a.b;\nsq x = x * x;\nprintln (sq 2);\n"
+                + "twice f x = f (f x);\nimport java.io.File;\n",
+                new ReplPreload(COMMANDS).replInput(null));
+    }
+}
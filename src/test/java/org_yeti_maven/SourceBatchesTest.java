@@ -0,0 +1,132 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SourceBatchesTest {
+
+    private File dir;
+    private List<String> sources;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("sourcebatches", "");
+        dir.delete();
+        dir.mkdirs();
+        sources = new ArrayList<String>();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private String yeti(String module, String text) throws IOException {
+        return source(module.replace('.', '/') + ".yeti",
+                "module " + module + ";\n" + text);
+    }
+
+    private String source(String path, String text) throws IOException {
+        File f = new File(dir, path);
+        f.getParentFile().mkdirs();
+        FileUtils.fileWrite(f.getPath(), "UTF-8", text);
+        sources.add(f.getPath());
+        return f.getPath();
+    }
+
+    private List<List<String>> split(int batchSize) throws IOException {
+        return SourceBatches.split(sources, Collections.singletonList(dir),
+                batchSize);
+    }
+
+    private int batchOf(List<List<String>> batches, String source) {
+        for (int i = 0; i < batches.size(); i++) {
+            if (batches.get(i).contains(source)) {
+                return i;
+            }
+        }
+        throw new AssertionError(source + " in no batch");
+    }
+
+    @Test
+    public void loadedModulesComeFirst() throws IOException {
+        String c = yeti("p.c", "load p.b; 3");
+        String b = yeti("p.b", "load p.a; 2");
+        String a = yeti("p.a", "1");
+        List<List<String>> batches = split(1);
+        assertEquals(Arrays.asList(Arrays.asList(a), Arrays.asList(b),
+                    Arrays.asList(c)), batches);
+    }
+
+    @Test
+    public void cyclesStayInOneBatch() throws IOException {
+        String a = yeti("a", "load b; 1");
+        String b = yeti("b", "load a; 2");
+        String c = yeti("c", "load a; 3");
+        List<List<String>> batches = split(1);
+        assertEquals(2, batches.size());
+        assertEquals(batchOf(batches, a), batchOf(batches, b));
+        assertTrue(batchOf(batches, c) > batchOf(batches, a));
+    }
+
+    @Test
+    public void javaComesAfterTheModulesItUses() throws IOException {
+        String lib = yeti("p.lib", "{f x = x}");
+        String java = source("p/User.java",
+                "package p;\nclass User { Object o = lib.eval(); }");
+        String other = source("q/Other.java",
+                "package q;\nclass Other {}");
+        List<List<String>> batches = split(1);
+        assertTrue(batchOf(batches, java) > batchOf(batches, lib));
+        assertEquals(batchOf(batches, java), batchOf(batches, other));
+    }
+
+    @Test
+    public void modulesUsingJavaComeAfterIt() throws IOException {
+        String java = source("q/Util.java",
+                "package q;\npublic class Util {}");
+        String user = yeti("user", "import q.Util;\nnew Util()");
+        List<List<String>> batches = split(1);
+        assertEquals(2, batches.size());
+        assertTrue(batchOf(batches, user) > batchOf(batches, java));
+    }
+
+    @Test
+    public void javaAndYetiReferringToEachOtherShareABatch()
+            throws IOException {
+        String java = source("q/Util.java",
+                "package q;\nimport p.*;\npublic class Util {"
+                + " Object o = mod.eval(); }");
+        String mod = yeti("p.mod", "~q.Util#new()");
+        List<List<String>> batches = split(1);
+        assertEquals(1, batches.size());
+        assertEquals(batchOf(batches, java), batchOf(batches, mod));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class YetiSourcesTest {
+
+    @Test
+    public void moduleName() {
+        assertEquals("foo.bar",
+                YetiSources.moduleName("// x\nmodule foo.bar;\n1"));
+        assertEquals("foo", YetiSources.moduleName("program foo;\n1"));
+        assertNull(YetiSources.moduleName("load foo;\n1"));
+    }
+
+    @Test
+    public void loadsSkipComments() {
+        assertEquals(Arrays.asList("a.b", "c"), YetiSources.loads(
+                    "load a.b;\n// load x;\n/* load /* y */ z */\nload c;"
+                    + " load a.b; \"load s\""));
+    }
+
+    @Test
+    public void javaReferencesOfImports() {
+        assertEquals(Arrays.asList("java.io.File", "java.util.List",
+                    "java.util.Map"), YetiSources.javaReferences(
+                    "import java.io.File;\nimport java.util: List, Map;\n1"));
+    }
+
+    @Test
+    public void javaReferencesResolveSimpleNames() {
+        assertEquals(Arrays.asList("java.io.File", "java.util.ArrayList"),
+                YetiSources.javaReferences("import java.io.File;\n"
+                    + "f = new File('x');\n"
+                    + "l = new java.util.ArrayList();\n"
+                    + "s = f unsafely_as ~File;\n"
+                    + "new String()"));
+    }
+
+    @Test
+    public void javaReferencesIgnoreStringsAndComments() {
+        assertEquals(Collections.emptyList(), YetiSources.javaReferences(
+                    "// import a.B;\n\"new c.D\"; new Object()"));
+    }
+
+    @Test
+    public void referencedClassesOfJava() {
+        List<String> modules = Arrays.asList("p.a", "p.b", "q.c", "r.d",
+                "top");
+        assertEquals(Arrays.asList("p.a", "q.c", "r.d"),
+                YetiSources.referencedClasses("package p;\n"
+                    + "import r.*;\n"
+                    + "class X { Object o = a.eval(), p = q.c.eval();\n"
+                    + " // b.eval()\n"
+                    + " String s = \"top\"; Object r = d.eval(); }",
+                    modules));
+    }
+}
@@ -0,0 +1,52 @@
+package org_yeti_maven_executions;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThreadOutputTest {
+
+    private PrintStream out;
+    private PrintStream err;
+    private ByteArrayOutputStream console;
+
+    @Before
+    public void setUp() {
+        out = System.out;
+        err = System.err;
+        console = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(console, true));
+        System.setErr(new PrintStream(console, true));
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(out);
+        System.setErr(err);
+    }
+
+    @Test
+    public void logPrintingToSystemOutIsNotRoutedAgain() {
+        //SystemStreamLog prints to System.out like the maven console logger
+        ThreadOutput.start(new SystemStreamLog());
+        try {
+            System.out.println("compiled errorHandling");
+            System.err.println("warning of the compiler");
+            System.out.print("no newline");
+        } finally {
+            ThreadOutput.stop();
+        }
+        System.out.println("after");
+        String nl = System.getProperty("line.separator");
+        assertEquals("[info] compiled errorHandling" + nl
+                + "[warn] warning of the compiler" + nl
+                + "[info] no newline" + nl
+                + "after" + nl, console.toString());
+    }
+}
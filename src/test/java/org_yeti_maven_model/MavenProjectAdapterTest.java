@@ -0,0 +1,197 @@
+/*
+ * Copyright 2011 Christian Essl
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+package org_yeti_maven_model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+/**
+ * The keys of apply and update map to the same project properties as the
+ * if-chains they replaced did.
+ */
+public class MavenProjectAdapterTest {
+
+    /** key -> the property of the project it stands for */
+    private static final Map<String, String> KEYS =
+        new LinkedHashMap<String, String>();
+
+    private static void keys(String property, String... keys) {
+        for (String key : keys) {
+            KEYS.put(key, property);
+        }
+    }
+
+    static {
+        keys("build.directory", "build.directory",
+                "project.build.directory", "buildDirectory",
+                "project.buildDirectory");
+        keys("build.outputDirectory", "outputDirectory",
+                "project.outputDirectory", "output.directory",
+                "project.output.directory");
+        keys("artifactId", "artifactId", "project.artifactId");
+        keys("basedir", "basedir", "project.basedir");
+        keys("build.defaultGoal", "defaultGoal", "project.defaultGoal");
+        keys("build.finalName", "finalName", "project.finalName");
+        keys("build.scriptSourceDirectory", "scriptSourceDirectory",
+                "project.scriptSourceDirectory", "script.source.directory",
+                "project.script.source.directory");
+        keys("build.sourceDirectory", "source.directory",
+                "project.source.directory", "sourceDirectory",
+                "project.sourceDirectory");
+        keys("build.testOutputDirectory", "test.output.directory",
+                "project.test.output.directory", "testOutputDirectory",
+                "project.testOutputDirectory");
+        keys("build.testSourceDirectory", "test.source.directory",
+                "project.test.source.directory", "testSourceDirectory",
+                "project.testSourceDirectory");
+        keys("description", "directory", "project.directory");
+        keys("file", "pom");
+        keys("groupId", "groupId", "project.groupId");
+        keys("id", "id", "project.id");
+        keys("inceptionYear", "inception", "project.inception",
+                "inceptionYear", "project.inceptionYear", "inception.year",
+                "project.inception.year");
+        keys("name", "name", "project.name");
+        keys("packaging", "packaging", "project.packaging");
+        keys("url", "url", "project.url");
+        keys("version", "version", "project.version");
+    }
+
+    private static MavenProject project() {
+        Model model = new Model();
+        model.setBuild(new Build());
+        MavenProject p = new MavenProject(model);
+        p.getBuild().setDirectory("/p/target");
+        p.getBuild().setOutputDirectory("/p/target/classes");
+        p.getBuild().setDefaultGoal("install");
+        p.getBuild().setFinalName("final");
+        p.getBuild().setScriptSourceDirectory("/p/src/main/scripts");
+        p.getBuild().setSourceDirectory("/p/src/main/java");
+        p.getBuild().setTestOutputDirectory("/p/target/test-classes");
+        p.getBuild().setTestSourceDirectory("/p/src/test/java");
+        p.setArtifactId("artifact");
+        p.setGroupId("group");
+        p.setVersion("1.0");
+        p.setPackaging("jar");
+        p.setDescription("description");
+        p.setInceptionYear("2011");
+        p.setName("the name");
+        p.setUrl("http://example.org");
+        p.setFile(new File("/p/pom.xml"));
+        return p;
+    }
+
+    /** The properties of the project by the names of KEYS. */
+    private static Map<String, String> properties(MavenProject p) {
+        Map<String, String> r = new TreeMap<String, String>();
+        r.put("build.directory", p.getBuild().getDirectory());
+        r.put("build.outputDirectory", p.getBuild().getOutputDirectory());
+        r.put("artifactId", p.getArtifactId());
+        r.put("basedir", p.getBasedir().getAbsolutePath());
+        r.put("build.defaultGoal", p.getBuild().getDefaultGoal());
+        r.put("build.finalName", p.getBuild().getFinalName());
+        r.put("build.scriptSourceDirectory",
+                p.getBuild().getScriptSourceDirectory());
+        r.put("build.sourceDirectory", p.getBuild().getSourceDirectory());
+        r.put("build.testOutputDirectory",
+                p.getBuild().getTestOutputDirectory());
+        r.put("build.testSourceDirectory",
+                p.getBuild().getTestSourceDirectory());
+        r.put("description", p.getDescription());
+        r.put("file", p.getFile().getAbsolutePath());
+        r.put("groupId", p.getGroupId());
+        r.put("id", p.getId());
+        r.put("inceptionYear", p.getInceptionYear());
+        r.put("name", p.getName());
+        r.put("packaging", p.getPackaging());
+        r.put("url", p.getUrl());
+        r.put("version", p.getVersion());
+        for (Map.Entry<Object, Object> e : p.getProperties().entrySet()) {
+            r.put("property " + e.getKey(), (String) e.getValue());
+        }
+        return r;
+    }
+
+    /** keys which are set in the JVM or environment are read from there */
+    private static boolean external(String key) {
+        return System.getProperty(key) != null || System.getenv(key) != null;
+    }
+
+    @Test
+    public void applyReadsTheProperty() {
+        MavenProject p = project();
+        MavenProjectAdapter adapter = new MavenProjectAdapter(p);
+        Map<String, String> properties = properties(p);
+        for (Map.Entry<String, String> e : KEYS.entrySet()) {
+            if (!external(e.getKey())) {
+                assertEquals(e.getKey(), properties.get(e.getValue()),
+                        adapter.apply(e.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void updateWritesTheProperty() {
+        for (Map.Entry<String, String> e : KEYS.entrySet()) {
+            String key = e.getKey();
+            MavenProject p = project();
+            Map<String, String> before = properties(p);
+            new MavenProjectAdapter(p).update(key, "/v/" + key);
+            Map<String, String> after = properties(p);
+
+            Set<String> changed = new HashSet<String>(after.keySet());
+            for (Map.Entry<String, String> b : before.entrySet()) {
+                if (b.getValue() == null ? after.get(b.getKey()) == null
+                        : b.getValue().equals(after.get(b.getKey()))) {
+                    changed.remove(b.getKey());
+                }
+            }
+            //the id is made of groupId, artifactId, packaging and version
+            changed.remove("id");
+
+            Set<String> expected;
+            if (e.getValue().equals("basedir") || e.getValue().equals("id")) {
+                //read only, they end up as project properties
+                expected = Collections.singleton("property " + key);
+            } else {
+                expected = Collections.singleton(e.getValue());
+            }
+            assertEquals(key, expected, changed);
+        }
+    }
+
+    @Test
+    public void otherKeysAreProjectProperties() {
+        MavenProject p = project();
+        MavenProjectAdapter adapter = new MavenProjectAdapter(p);
+        adapter.update("yeti.test.key", "x");
+        assertEquals("x", p.getProperties().getProperty("yeti.test.key"));
+        assertEquals("x", adapter.apply("yeti.test.key"));
+        assertEquals("d", adapter.apply("yeti.test.other", "d"));
+    }
+}